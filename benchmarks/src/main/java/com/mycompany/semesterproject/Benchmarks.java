@@ -0,0 +1,20 @@
+package com.mycompany.semesterproject;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks with the GC profiler so the allocation rate is reported next to the throughput
+public class Benchmarks {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        var options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args)) // Any JMH command line option still works, Example: java -jar benchmarks.jar ScheduleBenchmark.addGrades -p size=10000
+            .addProfiler(GCProfiler.class)
+            .build();
+        
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.mycompany.semesterproject;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Generates API responses with the same shape the Brightspace endpoints return, so benchmarks don't need the network
+public class Fixtures {
+    private static final long START = LocalDateTime.of(2024, 1, 8, 0, 0).toEpochSecond(ZoneOffset.UTC); // The first day of the generated semester
+    private static final long SEMESTER_SECONDS = 60L * 60 * 24 * 120; // Dates are spread over a 120 day semester
+    
+    /*
+        @assignments The number of assignments to generate
+        @depth How many levels of module entities the assignments are nested under
+        @seed The seed for the random dates and completions, so every run gets the same fixture
+        @return A sequences endpoint response
+    */
+    public static JSONObject sequences(int assignments, int depth, long seed) {
+        var random = new Random(seed);
+        var root = entity("Course", null);
+        var modules = new JSONArray();
+        root.put("entities", modules);
+        
+        // Split the assignments into modules of up to 10 so the tree has the same fan out as a real course
+        for (int i = 0; i < assignments; i += 10) {
+            var module = entity("Module " + (i / 10), null);
+            var parent = module;
+            
+            // Nest the assignments under extra levels of sub modules
+            for (int level = 1; level < depth; level++) {
+                var child = entity("Sub module " + level, null);
+                parent.put("entities", new JSONArray().put(child));
+                parent = child;
+            }
+            
+            var items = new JSONArray();
+            
+            for (int j = i; j < Math.min(assignments, i + 10); j++) {
+                var due = LocalDateTime.ofEpochSecond(START + (long)(random.nextDouble() * SEMESTER_SECONDS), 0, ZoneOffset.UTC);
+                var dueDate = new JSONObject()
+                    .put("Year", due.getYear()).put("Month", due.getMonthValue()).put("Day", due.getDayOfMonth())
+                    .put("Hour", due.getHour()).put("Minute", due.getMinute()).put("Second", due.getSecond());
+                
+                var assignment = entity("Assignment " + j, dueDate);
+                var children = new JSONArray();
+                children.put(new JSONObject().put("class", new JSONArray().put("link")).put("properties", new JSONObject().put("href", "https://example.com/" + j)));
+                
+                // About half the assignments have been submitted
+                if (random.nextBoolean()) {
+                    children.put(new JSONObject()
+                        .put("class", new JSONArray().put("completion").put("date"))
+                        .put("properties", new JSONObject().put("date", timestamp(random))));
+                }
+                
+                assignment.put("entities", children);
+                items.put(assignment);
+            }
+            
+            parent.put("entities", items);
+            modules.put(module);
+        }
+        
+        return root;
+    }
+    
+    /*
+        @count The number of grades to generate
+        @return A grades/values endpoint response
+    */
+    public static JSONArray grades(int count, long seed) {
+        var random = new Random(seed);
+        var grades = new JSONArray();
+        
+        for (int i = 0; i < count; i++) {
+            grades.put(new JSONObject()
+                .put("GradeObjectName", "Grade " + i)
+                .put("PointsNumerator", random.nextInt(101))
+                .put("PointsDenominator", 100)
+                .put("LastModified", timestamp(random)));
+        }
+        
+        return grades;
+    }
+    
+    /*
+        @count The number of calendar events to generate
+        @return A calendar/events endpoint response
+    */
+    public static JSONArray calendar(int count, long seed) {
+        var random = new Random(seed);
+        var events = new JSONArray();
+        
+        for (int i = 0; i < count; i++) {
+            var event = new JSONObject().put("Title", "Event " + i).put("StartDateTime", timestamp(random));
+            
+            // Some events don't have an end date, just like the real endpoint
+            if (i % 8 != 0)
+                event.put("EndDateTime", timestamp(random));
+            
+            events.put(event);
+        }
+        
+        return events;
+    }
+    
+    // @return A random API timestamp within the semester
+    public static String timestamp(Random random) {
+        return Instant.ofEpochSecond(START + (long)(random.nextDouble() * SEMESTER_SECONDS)).toString().replace("Z", ".000Z");
+    }
+    
+    // @return An entity with a title and an optional due date
+    private static JSONObject entity(String title, JSONObject dueDate) {
+        var properties = new JSONObject().put("title", title);
+        
+        if (dueDate != null)
+            properties.put("dueDate", dueDate);
+        
+        return new JSONObject().put("class", new JSONArray().put("sequence")).put("properties", properties);
+    }
+}
@@ -0,0 +1,159 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/*
+    An end-to-end load test against MockBrightspace. Every simulated student logs in, authorizes, discovers their courses, and then downloads
+    their deadlines, grades and calendar events over and over through the same code the menus use. It reports the throughput and the latency
+    percentiles of each query and of a whole refresh, followed by the client's per-endpoint statistics.
+    
+    Run it with: java -cp benchmarks/target/benchmarks.jar com.mycompany.semesterproject.LoadTest --students 32 --iterations 20 --latency 50
+    Any -Delearn.* setting still applies to the client, Example: -Delearn.maxRequestsPerHost=16
+*/
+public class LoadTest {
+    static final String USAGE_TEXT = String.join(System.lineSeparator(),
+        "Usage: LoadTest [options]",
+        "  --students <n>      Students running at the same time (default 16)",
+        "  --iterations <n>    Refreshes each student runs after logging in (default 10)",
+        MockBrightspace.USAGE_TEXT
+    );
+    
+    // The latencies of one kind of operation, and how many of them failed
+    private static class Operation {
+        final String name;
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicInteger failures = new AtomicInteger();
+        
+        Operation(String name) {
+            this.name = name;
+        }
+        
+        // Times the work and counts it as failed if it returns false
+        boolean time(BooleanSupplier work) {
+            long start = System.nanoTime();
+            boolean succeeded = work.getAsBoolean();
+            latencies.record((System.nanoTime() - start) / 1000000);
+            
+            if (!succeeded)
+                failures.incrementAndGet();
+            
+            return succeeded;
+        }
+        
+        String summary(double seconds) {
+            return String.format("%-10s %7d ops %7.1f ops/s %5d failed  mean %7.1fms  p50 %5dms  p95 %5dms  p99 %5dms",
+                name, latencies.count(), latencies.count() / seconds, failures.get(), latencies.mean(),
+                latencies.percentile(50), latencies.percentile(95), latencies.percentile(99));
+        }
+    }
+    
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var options = new MockBrightspace.Options();
+        int students = 16, iterations = 10;
+        
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException(args[i]);
+                
+                switch (args[i]) {
+                    case "--students" -> students = Integer.parseInt(args[i + 1]);
+                    case "--iterations" -> iterations = Integer.parseInt(args[i + 1]);
+                    default -> {
+                        if (!options.parse(args[i], args[i + 1]))
+                            throw new IllegalArgumentException(args[i]);
+                    }
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(USAGE_TEXT);
+            System.exit(2);
+        }
+        
+        var mock = new MockBrightspace(options);
+        
+        // The client reads its settings once, so they are set before any of its classes are used. -D values on the command line win
+        System.setProperty("elearn.baseUrl", mock.getBaseUrl());
+        System.setProperty("elearn.apiUrl", mock.getApiUrl());
+        System.getProperties().putIfAbsent("elearn.ratePerSecond", "100000"); // The per host rate limit is for the real servers, not the stand-in
+        System.getProperties().putIfAbsent("elearn.rateBurst", "100000");
+        System.getProperties().putIfAbsent("elearn.maxRequestsPerHost", "64");
+        System.getProperties().putIfAbsent("elearn.http.version", "HTTP_1_1"); // The stand-in only speaks HTTP/1.1, so skip the h2c upgrade attempt
+        System.getProperties().putIfAbsent("elearn.cache.enabled", "false"); // Every refresh should download the data, not revalidate it
+        System.getProperties().putIfAbsent("elearn.history.enabled", "false");
+        System.getProperties().putIfAbsent("elearn.metrics.jmx", "false");
+        
+        mock.start();
+        
+        Path directory = Files.createTempDirectory("elearn-loadtest");
+        var login = new Operation("login");
+        var deadlines = new Operation("deadlines");
+        var grades = new Operation("grades");
+        var calendar = new Operation("calendar");
+        var refresh = new Operation("refresh");
+        int runs = iterations;
+        
+        System.err.printf("Running %d students x %d refreshes against %s (%d courses, %d items, %dms latency, %.1f%% errors)%n",
+            students, iterations, mock.getBaseUrl(), options.courses, options.items, options.latencyMillis, options.errorRate * 100);
+        
+        ExecutorService executor = AccountEngine.newThreadPerTaskExecutor();
+        var running = new ArrayList<Future<?>>();
+        long start = System.nanoTime();
+        
+        try {
+            for (int student = 0; student < students; student++) {
+                Path session = directory.resolve("student" + student + ".txt");
+                
+                running.add(executor.submit(() -> {
+                    var elearn = new eLearn(session.toString());
+                    
+                    // Logging in includes the session file, the token and course discovery, which is what a student waits for at startup
+                    if (!login.time(() -> elearn.Login("student", "password") && elearn.Authorize() && elearn.getCourses(course -> {})))
+                        return;
+                    
+                    List<Course> courses = elearn.courses;
+                    
+                    for (int i = 0; i < runs; i++) {
+                        refresh.time(() -> {
+                            boolean ok = elearn.Authorize();
+                            ok &= deadlines.time(() -> Queries.fetchAssignments(elearn, courses).failedCourses == 0);
+                            ok &= grades.time(() -> Queries.fetchGrades(elearn, courses, true).failedCourses == 0);
+                            ok &= calendar.time(() -> Queries.fetchEvents(elearn, courses).failedCourses == 0);
+                            return ok;
+                        });
+                    }
+                }));
+            }
+            
+            for (var student : running) {
+                try {
+                    student.get();
+                } catch (ExecutionException ex) {
+                    System.err.println("A student failed: " + ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+            mock.stop();
+        }
+        
+        double seconds = (System.nanoTime() - start) / 1e9;
+        
+        System.out.printf("Finished in %.2fs%n", seconds);
+        
+        for (Operation operation : List.of(login, deadlines, grades, calendar, refresh))
+            System.out.println(operation.summary(seconds));
+        
+        System.out.println(mock.summary());
+        System.out.print(Metrics.report());
+    }
+}
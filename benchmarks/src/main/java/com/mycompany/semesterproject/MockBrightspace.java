@@ -0,0 +1,305 @@
+package com.mycompany.semesterproject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/*
+    A local stand-in for eLearn and the Brightspace API, so the whole client can be run and load tested without the network.
+    It answers the login form, the session check, the home page, the oauth2 token, the enrollments, organizations and sequences services,
+    and the grades and calendar endpoints, with synthetic responses from Fixtures. Every course gets the same number of items.
+    
+    The eLearn pages are served from the root and each API service from /api/<service>, so point the client at it with
+        -Delearn.baseUrl=http://127.0.0.1:<port> -Delearn.apiUrl=http://127.0.0.1:<port>/api/{service}
+    
+    Run it on its own with: java -cp benchmarks/target/benchmarks.jar com.mycompany.semesterproject.MockBrightspace --port 8080
+*/
+public class MockBrightspace {
+    // What the stand-in serves
+    public static class Options {
+        public int port = 0; // 0 picks a free port
+        public int courses = 8; // The number of courses every student is enrolled in
+        public int items = 50; // The number of assignments, grades and calendar events in each course
+        public long latencyMillis = 0; // How long every response is held before it is sent
+        public double errorRate = 0; // The chance from 0 to 1 that an API response is a 500 instead
+        public long seed = 42; // The seed for the generated courses, so every run serves the same data
+        
+        /*
+            @flag A command line flag, such as "--courses"
+            @value The flag's value
+            @return True if the flag is one of the stand-in's options
+        */
+        public boolean parse(String flag, String value) {
+            switch (flag) {
+                case "--port" -> port = Integer.parseInt(value);
+                case "--courses" -> courses = Integer.parseInt(value);
+                case "--items" -> items = Integer.parseInt(value);
+                case "--latency" -> latencyMillis = Long.parseLong(value);
+                case "--error-rate" -> errorRate = Double.parseDouble(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+    }
+    
+    static final String USAGE_TEXT = String.join(System.lineSeparator(),
+        "  --port <n>          The port to listen on (default a free port)",
+        "  --courses <n>       Courses per student (default 8)",
+        "  --items <n>         Assignments, grades and calendar events per course (default 50)",
+        "  --latency <ms>      Delay before every response (default 0)",
+        "  --error-rate <0-1>  Share of API responses that fail with a 500 (default 0)",
+        "  --seed <n>          Seed for the generated data (default 42)"
+    );
+    
+    private static final int PAGE_SIZE = 20; // Enrollments per page, the same as the pageSize the client asks for
+    private static final String USER_ID = "4242";
+    
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>(); // Generated bodies, so every request for the same course is served the same bytes
+    private final AtomicLong requests = new AtomicLong(), errors = new AtomicLong(), sessions = new AtomicLong();
+    
+    public MockBrightspace(Options options) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.port), 0);
+        this.executor = AccountEngine.newThreadPerTaskExecutor(); // The latency sleeps must not hold back other requests
+        
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+    
+    // @return The stand-in, started
+    public MockBrightspace start() {
+        server.start();
+        return this;
+    }
+    
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    // @return The url to use as elearn.baseUrl
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+    
+    // @return The url to use as elearn.apiUrl
+    public String getApiUrl() {
+        return getBaseUrl() + "/api/{service}";
+    }
+    
+    // @return The number of requests answered, and how many of them were failed on purpose
+    public String summary() {
+        return String.format("Stand-in: %d requests, %d injected errors, %d logins", requests.get(), errors.get(), sessions.get());
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            
+            if (options.latencyMillis > 0)
+                Thread.sleep(options.latencyMillis);
+            
+            String path = exchange.getRequestURI().getPath();
+            
+            // Only the data endpoints fail on purpose, so a load test always gets as far as asking for the data
+            if (path.startsWith("/api/") || path.startsWith("/d2l/api/")) {
+                if (options.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < options.errorRate) {
+                    errors.incrementAndGet();
+                    send(exchange, 500, "text/plain", "Injected error".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            
+            route(exchange, path);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            send(exchange, 500, "text/plain", String.valueOf(ex).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    private void route(HttpExchange exchange, String path) throws IOException {
+        String[] parts = path.split("/");
+        
+        if (path.equals("/d2l/lp/auth/login/login.d2l")) {
+            // A successful login redirects to the home page and sets the session cookies
+            long session = sessions.incrementAndGet();
+            exchange.getResponseHeaders().add("Location", "/d2l/home");
+            exchange.getResponseHeaders().add("Set-Cookie", "d2lSessionVal=session" + session + "; path=/; HttpOnly");
+            exchange.getResponseHeaders().add("Set-Cookie", "d2lSecureSessionVal=secure" + session + "; path=/; HttpOnly");
+            send(exchange, 302, "text/html", new byte[0]);
+        }
+        else if (path.equals("/d2l/lp/profile/profile_edit.d2l")) {
+            // The client checks a saved cookie here. Any cookie is accepted
+            if (exchange.getRequestHeaders().getFirst("Cookie") == null) {
+                exchange.getResponseHeaders().add("Location", "/d2l/login?sessionExpired=1");
+                send(exchange, 302, "text/html", new byte[0]);
+            }
+            else {
+                send(exchange, 200, "text/html", "<html><body>Profile</body></html>".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        else if (path.equals("/d2l/home")) {
+            send(exchange, 200, "text/html", body("home", this::homePage));
+        }
+        else if (path.equals("/d2l/lp/auth/oauth2/token")) {
+            var token = new JSONObject()
+                .put("access_token", "token-" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE))
+                .put("expires_at", System.currentTimeMillis() / 1000 + 3600);
+            
+            send(exchange, 200, "application/json", token.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        else if (path.startsWith("/api/enrollments/users/")) {
+            int page = parseInt(query(exchange, "page"), 0);
+            send(exchange, 200, "application/json", body("enrollments-" + page, () -> enrollments(page)));
+        }
+        else if (path.startsWith("/api/enrollments/courses/")) {
+            String courseId = parts[parts.length - 1];
+            send(exchange, 200, "application/json", body("course-" + courseId, () -> courseInfo(courseId)));
+        }
+        else if (path.startsWith("/api/organizations/")) {
+            String courseId = parts[parts.length - 1];
+            send(exchange, 200, "application/json", body("organization-" + courseId, () -> new JSONObject().put("properties", new JSONObject().put("name", "Course " + courseId)).toString()));
+        }
+        else if (path.startsWith("/api/sequences/")) {
+            String courseId = parts[parts.length - 1];
+            send(exchange, 200, "application/json", body("sequences-" + courseId, () -> Fixtures.sequences(options.items, 2, seedOf(courseId)).toString()));
+        }
+        else if (path.contains("/grades/values/")) {
+            String courseId = parts[5]; // /d2l/api/le/<version>/<courseId>/grades/values/<userId>/
+            send(exchange, 200, "application/json", body("grades-" + courseId, () -> Fixtures.grades(options.items, seedOf(courseId)).toString()));
+        }
+        else if (path.contains("/calendar/events/")) {
+            String courseId = parts[5]; // /d2l/api/le/<version>/<courseId>/calendar/events/
+            send(exchange, 200, "application/json", body("calendar-" + courseId, () -> Fixtures.calendar(options.items, seedOf(courseId)).toString()));
+        }
+        else {
+            send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    // The home page sets the csrf token and user ID near the top, like the real one, followed by the rest of the page
+    private String homePage() {
+        var page = new StringBuilder("<!DOCTYPE html><html><head><script>\n");
+        page.append("D2L.LP.Web.Authentication.Xsrf.Init('XSRF.Token','xsrf-").append(options.seed).append("');\n");
+        page.append("D2L.LP.Web.Session.Init('Session.UserId','").append(USER_ID).append("');\n");
+        page.append("</script></head><body>\n");
+        
+        for (int i = 0; i < 2000; i++)
+            page.append("<div class=\"d2l-widget\">Widget ").append(i).append("</div>\n");
+        
+        return page.append("</body></html>").toString();
+    }
+    
+    // @return One Siren page of enrollments with a "next" link if there are more courses
+    private String enrollments(int page) {
+        var entities = new JSONArray();
+        
+        for (int i = page * PAGE_SIZE; i < Math.min(options.courses, (page + 1) * PAGE_SIZE); i++)
+            entities.put(new JSONObject().put("href", Urls.api("enrollments", "/courses/" + courseIdOf(i))));
+        
+        var json = new JSONObject().put("entities", entities);
+        
+        if ((page + 1) * PAGE_SIZE < options.courses) {
+            String next = Urls.api("enrollments", "/users/" + USER_ID + "?page=" + (page + 1));
+            json.put("links", new JSONArray().put(new JSONObject().put("rel", new JSONArray().put("next")).put("href", next)));
+        }
+        
+        return json.toString();
+    }
+    
+    // @return An enrolled course, linking to its organization by the course ID
+    private String courseInfo(String courseId) {
+        var links = new JSONArray()
+            .put(new JSONObject().put("rel", new JSONArray().put("self")).put("href", Urls.api("enrollments", "/courses/" + courseId)))
+            .put(new JSONObject().put("rel", new JSONArray().put("https://api.brightspace.com/rels/organization")).put("href", Urls.api("organizations", "/" + courseId)));
+        
+        return new JSONObject().put("links", links).toString();
+    }
+    
+    private static String courseIdOf(int course) {
+        return String.valueOf(100000 + course);
+    }
+    
+    private long seedOf(String courseId) {
+        return options.seed * 31 + courseId.hashCode();
+    }
+    
+    // @return The cached body for the key, generating it the first time
+    private byte[] body(String key, Supplier<String> generate) {
+        return bodies.computeIfAbsent(key, unused -> generate.get().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String query(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        
+        if (query == null)
+            return null;
+        
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "="))
+                return pair.substring(name.length() + 1);
+        }
+        
+        return null;
+    }
+    
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+    
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+    
+    // Runs the stand-in until the process is stopped
+    public static void main(String[] args) throws IOException {
+        var options = new Options();
+        
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length || !options.parse(args[i], args[i + 1])) {
+                System.err.println("Usage: MockBrightspace [options]" + System.lineSeparator() + USAGE_TEXT);
+                System.exit(2);
+            }
+        }
+        
+        // The generated links must point back at this server, so the urls are set before anything reads them
+        var mock = new MockBrightspace(options);
+        System.setProperty("elearn.baseUrl", mock.getBaseUrl());
+        System.setProperty("elearn.apiUrl", mock.getApiUrl());
+        mock.start();
+        
+        System.out.println("Brightspace stand-in listening. Run the client with:");
+        System.out.printf("  -Delearn.baseUrl=%s -Delearn.apiUrl=%s%n", mock.getBaseUrl(), mock.getApiUrl());
+    }
+}
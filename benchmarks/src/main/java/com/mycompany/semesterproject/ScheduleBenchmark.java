@@ -0,0 +1,111 @@
+package com.mycompany.semesterproject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Measures how fast API responses are turned into a Schedule as the number of items grows
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleBenchmark {
+    @Param({ "10", "100", "1000", "10000" })
+    public int size; // The number of assignments, grades and calendar events in each fixture
+    
+    @Param({ "1", "8" })
+    public int depth; // How many module levels the assignments are nested under
+    
+    private JSONObject sequences;
+    private byte[] sequencesBody;
+    private JSONArray grades, calendar;
+    private String[] timestamps;
+    private Schedule submittedLookup;
+    
+    @Setup
+    public void setup() {
+        sequences = Fixtures.sequences(size, depth, 42);
+        sequencesBody = sequences.toString().getBytes(StandardCharsets.UTF_8);
+        grades = Fixtures.grades(size, 42);
+        calendar = Fixtures.calendar(size, 42);
+        submittedLookup = new Schedule(0, 0);
+        
+        var random = new Random(42);
+        timestamps = new String[size];
+        
+        for (int i = 0; i < size; i++)
+            timestamps[i] = Fixtures.timestamp(random);
+    }
+    
+    @Benchmark
+    public Schedule addAssignments() {
+        var schedule = new Schedule(0, 0);
+        schedule.addAssignments(sequences);
+        return schedule;
+    }
+    
+    // The streaming path Deadlines uses by default, parsing straight from the response bytes
+    @Benchmark
+    public Schedule streamAssignments() throws IOException {
+        var schedule = new Schedule(0, 0);
+        SequenceParser.parse(new ByteArrayInputStream(sequencesBody), schedule::addAssignment);
+        return schedule;
+    }
+    
+    @Benchmark
+    public Schedule addGradesByDate() {
+        var schedule = new Schedule(0, 0);
+        schedule.addGrades(grades, true);
+        return schedule;
+    }
+    
+    @Benchmark
+    public Schedule addGradesByGrade() {
+        var schedule = new Schedule(0, 0);
+        schedule.addGrades(grades, false);
+        return schedule;
+    }
+    
+    @Benchmark
+    public Schedule addCalendar() {
+        var schedule = new Schedule(0, 0);
+        schedule.addCalendar(calendar);
+        return schedule;
+    }
+    
+    // Searches the whole tree, which is the worst case for the recursive submission lookup
+    @Benchmark
+    public Long getSubmittedDate() {
+        return submittedLookup.getSubmittedDate(sequences);
+    }
+    
+    @Benchmark
+    public void timestampToEpoch(Blackhole blackhole) {
+        for (String timestamp : timestamps)
+            blackhole.consume(Schedule.timestampToEpoch(timestamp, "yyyy-MM-dd'T'HH:mm:ss", false));
+    }
+    
+    @Benchmark
+    public void epochToTimestamp(Blackhole blackhole) {
+        for (int i = 0; i < size; i++)
+            blackhole.consume(Schedule.epochToTimestamp(1704672000000L + i * 60000L));
+    }
+}
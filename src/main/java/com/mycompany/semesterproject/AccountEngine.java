@@ -0,0 +1,126 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ExecutionException;
+
+/*
+    Runs the batch queries for many accounts in one JVM. Each account's Load, Authorize, getCourses and queries run on their own thread,
+    which is a virtual thread when the JVM supports them. The number of accounts running at once is limited by maxAccounts, and
+    Networking limits the requests per host, so all accounts together never open more connections to one host than it allows.
+*/
+public class AccountEngine {
+    private final Semaphore running; // Limits the number of accounts running at the same time
+    
+    // @maxAccounts The number of accounts that can run at the same time
+    public AccountEngine(int maxAccounts) {
+        this.running = new Semaphore(maxAccounts);
+    }
+    
+    /*
+        @options The query options. options.accounts is the file listing the session files
+        @out Where to write one JSON line per account
+        @return OK if every account succeeded, PARTIAL if any account failed, or USAGE if the accounts file couldn't be read
+    */
+    public int run(Batch.Options options, PrintStream out) {
+        List<String> sessions;
+        
+        try {
+            sessions = new ArrayList<>();
+            
+            // Every non blank line that doesn't start with "#" is a session file
+            for (String line : Files.readAllLines(Path.of(options.accounts))) {
+                if (!line.isBlank() && !line.trim().startsWith("#"))
+                    sessions.add(line.trim());
+            }
+        } catch (IOException ex) {
+            System.err.println("Error! Can't read the accounts file " + options.accounts);
+            return Batch.USAGE;
+        }
+        
+        return run(sessions, options, new JsonLinesSink(out));
+    }
+    
+    /*
+        @sessions The session file of each account
+        @options The query options to run for every account
+        @sink Receives each account's results
+        @return OK if every account succeeded, otherwise PARTIAL
+    */
+    public int run(List<String> sessions, Batch.Options options, ResultSink sink) {
+        ExecutorService executor = newThreadPerTaskExecutor();
+        var accounts = new ArrayList<Future<Integer>>();
+        
+        try {
+            for (String session : sessions) {
+                accounts.add(executor.submit(() -> {
+                    running.acquire();
+                    
+                    try {
+                        Batch.Result result;
+                        
+                        // Each account is one action in a flight recording
+                        var action = Profiling.action("account " + session);
+                        try {
+                            result = Batch.execute(options.forSession(session));
+                        } catch (RuntimeException ex) {
+                            System.err.printf("Error! The account %s failed: %s%n", session, ex);
+                            result = new Batch.Result(Batch.UNAUTHORIZED);
+                        } finally {
+                            action.close();
+                        }
+                        
+                        sink.write(session, result);
+                        return result.status;
+                    } finally {
+                        running.release();
+                    }
+                }));
+            }
+            
+            int status = Batch.OK;
+            
+            for (var account : accounts) {
+                try {
+                    if (account.get() != Batch.OK)
+                        status = Batch.PARTIAL;
+                } catch (ExecutionException ex) {
+                    status = Batch.PARTIAL;
+                }
+            }
+            
+            return status;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Batch.PARTIAL;
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /*
+        Virtual threads are only available on Java 21 and newer, so they are looked up at runtime and the project can still build for older versions.
+        
+        @return An executor that starts a new virtual thread for every task, or a cached pool of daemon threads if virtual threads aren't supported
+    */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.mycompany.semesterproject;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.mycompany.semesterproject.Action")
+@Label("Action")
+@Description("One menu action or batch run, from the student's selection until the results have been shown")
+@Category({"eLearn", "Action"})
+@StackTrace(false)
+class ActionEvent extends Event {
+    @Label("Action ID")
+    long actionId;
+    
+    @Label("Action")
+    String action;
+    
+    @Label("Courses")
+    int courses;
+    
+    @Label("Rows")
+    @Description("The number of rows shown")
+    int rows;
+}
@@ -0,0 +1,17 @@
+package com.mycompany.semesterproject;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.mycompany.semesterproject.Authorize")
+@Label("Authorize")
+@Description("Checking the API token, and waiting for a new one if it has expired")
+@Category({"eLearn", "Phase"})
+@StackTrace(false)
+class AuthorizeEvent extends PhaseEvent {
+    @Label("Authorized")
+    boolean authorized;
+}
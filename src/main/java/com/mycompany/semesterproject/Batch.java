@@ -0,0 +1,602 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/*
+    Runs queries without the menus so the program can be scripted, Example:
+        java -jar SemesterProject.jar deadlines calendar --range week --format json --courses all
+    It reuses the saved session file, prints the results to stdout (or --output) and returns an exit status.
+    Anything else the program prints, such as network errors, is sent to stderr so it doesn't mix with the results.
+*/
+public class Batch {
+    // Exit statuses
+    public static final int OK = 0; // Every query succeeded
+    public static final int USAGE = 1; // The arguments were invalid
+    public static final int NOT_LOGGED_IN = 2; // There is no saved session, or it expired. Log in with the menus to save a new one
+    public static final int UNAUTHORIZED = 3; // The API authorization or the course list could not be loaded
+    public static final int PARTIAL = 4; // At least one course could not be downloaded for at least one query
+    
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    
+    private static final String USAGE_TEXT = String.join(System.lineSeparator(),
+        "Usage: SemesterProject <deadlines|grades|calendar>... [options]",
+        "       SemesterProject sync [options]     Report new grades, changed deadlines and new events since the last sync",
+        "       SemesterProject history [options]  List every item recorded in the local history, without downloading anything",
+        "  --range today|week|month|all   Time window for deadlines and calendar events (default all)",
+        "  --format json|csv              Output format (default json)",
+        "  --courses all|<id>,<id>...     Courses to query (default all)",
+        "  --sort grade|date              Sort order for grades (default grade)",
+        "  --session <file>               Saved session file (default session.txt)",
+        "  --output <file>                Write the results to a file instead of stdout",
+        "  --accounts <file>              Query every session file listed in the file, one per line, and write one JSON line per account",
+        "  --max-accounts <n>             The number of accounts queried at the same time (default 64)",
+        "  --compact true|false           For history, first remove the records of items that didn't change (default false)",
+        "  --stats                        Print the latency, status and byte counts of each API endpoint when done",
+        "  For history, --range is how long ago the items were downloaded"
+    );
+    
+    // The options for one batch run
+    static class Options implements Cloneable {
+        List<String> queries = new ArrayList<>();
+        String range = "all", format = "json", courses = "all", sort = "grade", session = "session.txt", output = null;
+        String accounts = null; // A file listing one session file per line. If set, every account is queried by AccountEngine
+        int maxAccounts = 64; // The number of accounts AccountEngine runs at the same time
+        boolean compact = false; // Whether the history command compacts the history first
+        
+        // @session The session file to use in the copy
+        // @return A copy of these options for another account
+        Options forSession(String session) {
+            try {
+                var copy = (Options)super.clone();
+                copy.session = session;
+                return copy;
+            } catch (CloneNotSupportedException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+    }
+    
+    // The results of running the queries for one account
+    static class Result {
+        int status; // The exit status
+        List<Course> courses; // The courses that were queried, or null if the queries didn't run
+        Map<String, Schedule> schedules; // Each query's results in the order the queries were given, or null if the queries didn't run
+        long minTime, maxTime; // The time window for deadlines and calendar events
+        boolean gradesByDate; // Whether the grades are keyed by the date they were graded instead of by grade
+        Sync.Result sync; // The changes found by the sync command, or null if it didn't run
+        List<HistoryRecord> history; // The records found by the history command, or null if it didn't run
+        
+        Result(int status) {
+            this.status = status;
+        }
+        
+        // @return True if the queries or the sync ran, so there are results to write
+        boolean hasResults() {
+            return schedules != null || sync != null || history != null;
+        }
+        
+        // @return The results as one JSON object with an array for each query, or the sync's change feed
+        JSONObject toJSON() {
+            if (sync != null)
+                return Batch.toJSON(sync, courses);
+            
+            if (history != null)
+                return Batch.toJSON(history, minTime, maxTime);
+            
+            return Batch.toJSON(schedules, courses, gradesByDate, minTime, maxTime);
+        }
+        
+        // @return The number of items in the results, counting every item of every query
+        int countRows() {
+            if (sync != null)
+                return sync.changes.size();
+            
+            if (history != null)
+                return history.size();
+            
+            return schedules.values().stream().mapToInt(schedule -> schedule.items.size()).sum();
+        }
+    }
+    
+    /*
+        @args The command line arguments
+        @return The exit status
+    */
+    public static int run(String[] args) {
+        PrintStream results = System.out;
+        
+        // Everything the rest of the program prints goes to stderr, so stdout only contains the results
+        System.setOut(new PrintStream(System.err, true, StandardCharsets.UTF_8));
+        
+        try {
+            Options options = parse(args);
+            
+            if (options == null) {
+                System.err.println(USAGE_TEXT);
+                return USAGE;
+            }
+            
+            if (options.output != null) {
+                try (var file = new PrintStream(options.output, StandardCharsets.UTF_8)) {
+                    return run(options, file);
+                } catch (IOException ex) {
+                    System.err.println("Error! Can't write to " + options.output);
+                    return USAGE;
+                }
+            }
+            
+            return run(options, results);
+        } finally {
+            System.setOut(results);
+        }
+    }
+    
+    /*
+        @args The command line arguments
+        @return The parsed options, or null if the arguments are invalid
+    */
+    static Options parse(String[] args) {
+        var options = new Options();
+        
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            
+            if (!arg.startsWith("--")) {
+                if (!Arrays.asList("deadlines", "grades", "calendar", "sync", "history").contains(arg)) {
+                    System.err.println("Error! Unknown query " + arg);
+                    return null;
+                }
+                
+                if (!options.queries.contains(arg))
+                    options.queries.add(arg);
+                
+                continue;
+            }
+            
+            // Every option takes a value
+            if (i + 1 >= args.length) {
+                System.err.println("Error! Missing value for " + arg);
+                return null;
+            }
+            
+            String value = args[++i];
+            
+            switch (arg) {
+                case "--range" -> options.range = value;
+                case "--format" -> options.format = value;
+                case "--courses" -> options.courses = value;
+                case "--sort" -> options.sort = value;
+                case "--session" -> options.session = value;
+                case "--output" -> options.output = value;
+                case "--accounts" -> options.accounts = value;
+                case "--compact" -> options.compact = Boolean.parseBoolean(value);
+                case "--max-accounts" -> {
+                    try {
+                        options.maxAccounts = Integer.parseInt(value);
+                    } catch (NumberFormatException ex) {
+                        options.maxAccounts = 0;
+                    }
+                }
+                default -> {
+                    System.err.println("Error! Unknown option " + arg);
+                    return null;
+                }
+            }
+        }
+        
+        // sync and history cover every kind of data, so they can't be combined with the other queries
+        for (String command : List.of("sync", "history")) {
+            if (options.queries.contains(command) && options.queries.size() > 1) {
+                System.err.println("Error! " + command + " can't be combined with other queries");
+                return null;
+            }
+        }
+        
+        if (options.queries.isEmpty()
+            || !Arrays.asList("today", "week", "month", "all").contains(options.range)
+            || !Arrays.asList("json", "csv").contains(options.format)
+            || !Arrays.asList("grade", "date").contains(options.sort)
+            || options.maxAccounts < 1)
+            return null;
+        
+        return options;
+    }
+    
+    /*
+        @options The parsed options
+        @out Where to write the results
+        @return The exit status
+    */
+    static int run(Options options, PrintStream out) {
+        if (options.accounts != null)
+            return new AccountEngine(options.maxAccounts).run(options, out);
+        
+        // The whole run is one action in a flight recording
+        var action = Profiling.action("batch " + String.join(" ", options.queries));
+        try {
+            Result result = execute(options);
+            
+            if (!result.hasResults())
+                return result.status;
+            
+            var render = Profiling.begin(new RenderEvent());
+            write(result, options, out);
+            Profiling.endRender(render, result.countRows());
+            
+            return result.status;
+        } finally {
+            action.close();
+        }
+    }
+    
+    /*
+        @result The results of a run that has results
+        @options The parsed options
+        @out Where to write the results
+    */
+    private static void write(Result result, Options options, PrintStream out) {
+        if (options.format.equals("json"))
+            out.println(result.toJSON().toString(2));
+        else if (result.sync != null)
+            writeCSV(out, result.sync);
+        else if (result.history != null)
+            writeCSV(out, result.history);
+        else
+            writeCSV(out, result.schedules, result.gradesByDate, result.minTime, result.maxTime);
+        
+        out.flush();
+    }
+    
+    /*
+        Loads the saved session, authorizes, loads the courses and runs the queries for one account.
+        
+        @options The parsed options
+        @return The results and exit status
+    */
+    static Result execute(Options options) {
+        var elearn = new eLearn(options.session);
+        
+        if (options.queries.contains("history"))
+            return history(elearn, options);
+        
+        if (!elearn.Load()) {
+            System.err.println("Error! The saved session " + options.session + " is missing or expired. Log in once without arguments to save a new session.");
+            return new Result(NOT_LOGGED_IN);
+        }
+        
+        if (!elearn.getCourses(course -> {}, false)) {
+            System.err.println("Error! Failed to load the courses for " + options.session);
+            return new Result(UNAUTHORIZED);
+        }
+        
+        List<Course> courses = selectCourses(elearn.courses, options.courses);
+        
+        if (courses == null)
+            return new Result(USAGE);
+        
+        Profiling.Action action = Profiling.currentAction();
+        
+        if (action != null)
+            action.setCourses(courses.size());
+        
+        var result = new Result(OK);
+        result.courses = courses;
+        
+        if (options.queries.contains("sync")) {
+            result.sync = Sync.run(elearn, courses, Sync.getPath(options.session, elearn.auth.userId));
+            
+            if (result.sync.failedCourses.get() > 0)
+                result.status = PARTIAL;
+            
+            return result;
+        }
+        
+        result.gradesByDate = options.sort.equals("date");
+        result.schedules = query(elearn, courses, options.queries, result.gradesByDate);
+        result.minTime = System.currentTimeMillis();
+        result.maxTime = switch (options.range) {
+            case "today" -> result.minTime + DAY;
+            case "week" -> result.minTime + DAY * 7;
+            case "month" -> result.minTime + DAY * 31;
+            default -> Long.MAX_VALUE;
+        };
+        
+        for (Schedule schedule : result.schedules.values()) {
+            if (schedule.failedCourses > 0)
+                result.status = PARTIAL;
+        }
+        
+        return result;
+    }
+    
+    /*
+        Reads the local history. The saved access token is enough to find the student's history, so nothing is downloaded unless it expired.
+        
+        @elearn The student's session, which hasn't been loaded yet
+        @options The parsed options
+        @return The records downloaded in the requested range, oldest first
+    */
+    static Result history(eLearn elearn, Options options) {
+        // Authorize would try to refresh an expired token before the session cookie it needs was loaded, so the saved token is checked on its own first
+        if (!elearn.loadSavedAuthorization() && !(elearn.Load() && elearn.Authorize())) {
+            System.err.println("Error! The saved session " + options.session + " is missing or expired. Log in once without arguments to save a new session.");
+            return new Result(NOT_LOGGED_IN);
+        }
+        
+        HistoryStore history = elearn.getHistory();
+        
+        if (history == null) {
+            System.err.println("Error! The history is turned off or could not be opened");
+            return new Result(USAGE);
+        }
+        
+        var result = new Result(OK);
+        result.maxTime = System.currentTimeMillis();
+        result.minTime = switch (options.range) {
+            case "today" -> result.maxTime - DAY;
+            case "week" -> result.maxTime - DAY * 7;
+            case "month" -> result.maxTime - DAY * 31;
+            default -> Long.MIN_VALUE;
+        };
+        
+        var courseIds = options.courses.equals("all") ? null : Arrays.stream(options.courses.split(",")).map(String::trim).toList();
+        var records = new ArrayList<HistoryRecord>();
+        
+        try {
+            if (options.compact)
+                System.err.printf("Removed %d repeated records from the history%n", history.compact());
+            
+            history.query(result.minTime, result.maxTime, record -> {
+                if (courseIds == null || courseIds.contains(record.courseId))
+                    records.add(record);
+            });
+        } catch (IOException ex) {
+            System.err.println("Error! Failed to read the history: " + ex.getMessage());
+            return new Result(PARTIAL);
+        }
+        
+        result.history = records;
+        return result;
+    }
+    
+    /*
+        @courses All of the student's courses
+        @selection "all", or a comma separated list of course IDs
+        @return The selected courses, or null if an ID doesn't match any course
+    */
+    static List<Course> selectCourses(List<Course> courses, String selection) {
+        if (selection.equals("all"))
+            return courses;
+        
+        var selected = new ArrayList<Course>();
+        
+        for (String id : selection.split(",")) {
+            Course match = null;
+            
+            for (Course course : courses) {
+                if (course.id.equals(id.trim()))
+                    match = course;
+            }
+            
+            if (match == null) {
+                System.err.println("Error! You are not enrolled in a course with the ID " + id.trim());
+                return null;
+            }
+            
+            selected.add(match);
+        }
+        
+        return selected;
+    }
+    
+    /*
+        Runs every query at the same time, each on its own thread.
+        
+        @elearn The student's logged in and authorized session
+        @courses The courses to query
+        @queries The names of the queries to run
+        @sortGradesByDate Whether grades are keyed by the date they were graded instead of by grade
+        @return Each query's results, in the order the queries were given
+    */
+    static Map<String, Schedule> query(eLearn elearn, List<Course> courses, List<String> queries, boolean sortGradesByDate) {
+        ExecutorService executor = AccountEngine.newThreadPerTaskExecutor();
+        var pending = new LinkedHashMap<String, CompletableFuture<Schedule>>();
+        
+        try {
+            for (String query : queries) {
+                pending.put(query, CompletableFuture.supplyAsync(Profiling.wrap(() -> switch (query) {
+                    case "deadlines" -> Queries.fetchAssignments(elearn, courses);
+                    case "grades" -> Queries.fetchGrades(elearn, courses, sortGradesByDate);
+                    default -> Queries.fetchEvents(elearn, courses);
+                }), executor));
+            }
+            
+            var schedules = new LinkedHashMap<String, Schedule>();
+            pending.forEach((query, schedule) -> schedules.put(query, schedule.join()));
+            
+            return schedules;
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /*
+        @byDate Whether the grades are keyed by the date they were graded instead of by grade
+        @return The results as one JSON object with an array for each query
+    */
+    static JSONObject toJSON(Map<String, Schedule> schedules, List<Course> courses, boolean byDate, long minTime, long maxTime) {
+        var json = new JSONObject();
+        json.put("generatedAt", Instant.now().toString());
+        
+        var courseList = new JSONArray();
+        
+        for (Course course : courses)
+            courseList.put(new JSONObject().put("id", course.id).put("name", course.name));
+        
+        json.put("courses", courseList);
+        
+        var failures = new JSONObject();
+        
+        schedules.forEach((query, schedule) -> {
+            var items = new JSONArray();
+            
+            switch (query) {
+                case "deadlines" -> schedule.items.forEachInRange(minTime, maxTime, (deadline, assignment) -> items.put(new JSONObject()
+                    .put("title", assignment.title)
+                    .put("deadline", toISO(deadline))
+                    .put("submitted", assignment.isSubmitted() ? toISO(assignment.epoch) : JSONObject.NULL)));
+                case "grades" -> schedule.items.forEach((key, grade) -> items.put(new JSONObject()
+                    .put("name", grade.title)
+                    .put("graded", toISO(byDate ? key : grade.epoch))
+                    .put("grade", (byDate ? grade.epoch : key) / 10000.0)));
+                default -> schedule.items.forEachInRange(minTime, maxTime, (end, event) -> items.put(new JSONObject()
+                    .put("title", event.title)
+                    .put("end", toISO(end))));
+            }
+            
+            json.put(query, items);
+            failures.put(query, schedule.failedCourses);
+        });
+        
+        json.put("failedCourses", failures);
+        return json;
+    }
+    
+    /*
+        @sync The changes found by the sync command
+        @courses The courses that were synced
+        @return The change feed as one JSON object
+    */
+    static JSONObject toJSON(Sync.Result sync, List<Course> courses) {
+        var json = new JSONObject();
+        json.put("generatedAt", Instant.now().toString());
+        json.put("courses", courses.size());
+        json.put("skippedCourses", sync.skippedCourses.get());
+        json.put("newCourses", sync.newCourses.get());
+        json.put("failedCourses", sync.failedCourses.get());
+        
+        var changes = new JSONArray();
+        
+        synchronized (sync.changes) {
+            for (Change change : sync.changes)
+                changes.put(change.toJSON());
+        }
+        
+        json.put("changes", changes);
+        return json;
+    }
+    
+    /*
+        @records The records found by the history command
+        @minTime The earliest download time that was requested
+        @maxTime The latest download time that was requested
+        @return The records as one JSON object
+    */
+    static JSONObject toJSON(List<HistoryRecord> records, long minTime, long maxTime) {
+        var json = new JSONObject();
+        json.put("generatedAt", Instant.now().toString());
+        json.put("from", minTime == Long.MIN_VALUE ? JSONObject.NULL : toISO(minTime));
+        json.put("to", toISO(maxTime));
+        
+        var items = new JSONArray();
+        
+        for (HistoryRecord record : records) {
+            var item = new JSONObject()
+                .put("fetchedAt", toISO(record.fetchedAt))
+                .put("courseId", record.courseId)
+                .put("title", record.title);
+            
+            switch (record.kind) {
+                case DEADLINES -> item.put("kind", "deadline").put("deadline", toISO(record.key)).put("submitted", record.epoch == Assignment.NONE ? JSONObject.NULL : toISO(record.epoch));
+                case GRADES -> item.put("kind", "grade").put("graded", toISO(record.key)).put("grade", record.epoch / 10000.0);
+                case CALENDAR -> item.put("kind", "event").put("end", toISO(record.key));
+            }
+            
+            items.put(item);
+        }
+        
+        json.put("records", items);
+        return json;
+    }
+    
+    // Writes the history as CSV with one row per record: fetchedAt, kind, courseId, title, time, value
+    static void writeCSV(PrintStream out, List<HistoryRecord> records) {
+        out.println("fetchedAt,kind,courseId,title,time,value");
+        
+        for (HistoryRecord record : records) {
+            String value = switch (record.kind) {
+                case DEADLINES -> toISO(record.epoch);
+                case GRADES -> String.valueOf(record.epoch / 10000.0);
+                case CALENDAR -> "";
+            };
+            
+            String kind = switch (record.kind) {
+                case DEADLINES -> "deadline";
+                case GRADES -> "grade";
+                case CALENDAR -> "event";
+            };
+            
+            out.printf("%s,%s,%s,%s,%s,%s%n", toISO(record.fetchedAt), kind, record.courseId, csv(record.title), toISO(record.key), value);
+        }
+    }
+    
+    // Writes the sync's change feed as CSV with one row per change: courseId, kind, type, title, before, after
+    static void writeCSV(PrintStream out, Sync.Result sync) {
+        out.println("courseId,kind,type,title,before,after");
+        
+        synchronized (sync.changes) {
+            for (Change change : sync.changes)
+                out.printf("%s,%s,%s,%s,%s,%s%n", change.course.id, change.kind, change.type, csv(change.title), csvValue(change.before), csvValue(change.after));
+        }
+    }
+    
+    // @return The value of a change for CSV, which is empty when there is no value
+    private static String csvValue(Object value) {
+        return value == JSONObject.NULL ? "" : csv(String.valueOf(value));
+    }
+    
+    /*
+        Writes the results as CSV with one row per item: query, title, time, value
+        
+        @byDate Whether the grades are keyed by the date they were graded instead of by grade
+    */
+    static void writeCSV(PrintStream out, Map<String, Schedule> schedules, boolean byDate, long minTime, long maxTime) {
+        out.println("query,title,time,value");
+        
+        schedules.forEach((query, schedule) -> {
+            switch (query) {
+                case "deadlines" -> schedule.items.forEachInRange(minTime, maxTime, (deadline, assignment) -> 
+                    out.printf("deadlines,%s,%s,%s%n", csv(assignment.title), toISO(deadline), assignment.isSubmitted() ? toISO(assignment.epoch) : ""));
+                case "grades" -> schedule.items.forEach((key, grade) -> 
+                    out.printf("grades,%s,%s,%s%n", csv(grade.title), toISO(byDate ? key : grade.epoch), (byDate ? grade.epoch : key) / 10000.0));
+                default -> schedule.items.forEachInRange(minTime, maxTime, (end, event) -> 
+                    out.printf("calendar,%s,%s,%n", csv(event.title), toISO(end)));
+            }
+        });
+    }
+    
+    // @return The value quoted for CSV if it contains a comma, quote or line break
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+        
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+    
+    // @return The epoch as an ISO-8601 UTC timestamp, or an empty string for Assignment.NONE
+    private static String toISO(long epoch) {
+        return epoch == Assignment.NONE ? "" : Instant.ofEpochMilli(epoch).toString();
+    }
+}
@@ -0,0 +1,13 @@
+package com.mycompany.semesterproject;
+
+// A response body that was stored along with the validators the server sent for it
+class CacheEntry {
+    public String etag, lastModified; // The ETag and Last-Modified response headers. Either one may be null
+    public String body; // The response body
+    
+    public CacheEntry(String etag, String lastModified, String body) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.body = body;
+    }
+}
@@ -0,0 +1,60 @@
+package com.mycompany.semesterproject;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.URI;
+import java.util.Optional;
+import javax.net.ssl.SSLSession;
+
+// Wraps a 304 Not Modified response so callers see the stored body with a 200 status, just like a normal response
+class CachedResponse implements HttpResponse<String> {
+    private final HttpResponse<String> notModified; // The 304 response the server sent
+    private final String body; // The stored body that is still valid
+    
+    public CachedResponse(HttpResponse<String> notModified, String body) {
+        this.notModified = notModified;
+        this.body = body;
+    }
+    
+    @Override
+    public int statusCode() {
+        return 200;
+    }
+
+    @Override
+    public HttpRequest request() {
+        return notModified.request();
+    }
+
+    @Override
+    public Optional<HttpResponse<String>> previousResponse() {
+        return notModified.previousResponse();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return notModified.headers();
+    }
+
+    @Override
+    public String body() {
+        return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return notModified.sslSession();
+    }
+
+    @Override
+    public URI uri() {
+        return notModified.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return notModified.version();
+    }
+}
@@ -2,10 +2,12 @@ package com.mycompany.semesterproject;
 
 public class Calendar extends Menu {
     private eLearn elearn;
+    private LiveDataset events; // Every calendar event for the selected courses, with no time limit
     
     public Calendar(eLearn elearn) {
-        super("Events for Today", "Events for the Week", "Events for the Month", "All Upcoming Events", "Go Back");
+        super("Events for Today", "Events for the Week", "Events for the Month", "All Upcoming Events", "Refresh", "Go Back");
         this.elearn = elearn;
+        this.events = new LiveDataset(elearn, Snapshot.Kind.CALENDAR, "calendar events", Queries::fetchEvents);
     }
     
     public void processMenu() {
@@ -17,81 +19,90 @@ public class Calendar extends Menu {
             option = this.getSelection();
             System.out.println();
             
-            switch (option) {
-                case 1 -> {
-                    displayCalendar(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24)); // Events for today
-                }
-                case 2 -> {
-                    displayCalendar(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 7)); // Events for the week
-                }
-                case 3 -> {
-                    displayCalendar(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 31)); // Events for the month
-                }
-                case 4 -> {
-                    displayCalendar(System.currentTimeMillis(), 0); // All upcoming events
+            // Each selection is one action in a flight recording, so its phases can be grouped together
+            var action = Profiling.action(this.options[option - 1]);
+            try {
+                switch (option) {
+                    case 1 -> {
+                        displayCalendar(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24)); // Events for today
+                    }
+                    case 2 -> {
+                        displayCalendar(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 7)); // Events for the week
+                    }
+                    case 3 -> {
+                        displayCalendar(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 31)); // Events for the month
+                    }
+                    case 4 -> {
+                        displayCalendar(System.currentTimeMillis(), 0); // All upcoming events
+                    }
+                    case 5 -> {
+                        // Download the events again even if the ones we have aren't old yet
+                        if (events.get(true) != null)
+                            System.out.println("Calendar refreshed\n");
+                    }
                 }
+            } finally {
+                action.close();
             }
         } while (option != this.options.length);
     }
     
     /*
         @minTime The requested time in milliseconds to start showing calendar events from
-        @maxTime The requested time in milliseconds to stop showing calendar events from
+        @maxTime The requested time in milliseconds to stop showing calendar events from. If it is 0, then there is no limit
     */
     private void displayCalendar(long minTime, long maxTime) {
-        // Make sure student is authorized on the API before proceeding
-        if (!elearn.Authorize()) {
-            System.out.println("Error: Failed to get authorization token");
+        Dataset dataset = events.get(false);
+        
+        if (dataset == null)
             return;
+        
+        showCalendar(dataset, minTime, maxTime);
+        
+        // If the events came from the offline snapshot, then show them again once the live ones have downloaded, but only if they changed
+        Dataset live = events.awaitRevalidation();
+        
+        if (live == null)
+            return;
+        
+        if (live.schedule.items.equalsInRange(dataset.schedule.items, minTime, maxTime == 0 ? Long.MAX_VALUE : maxTime))
+            System.out.println("No changes on eLearn since then");
+        else {
+            System.out.println("Updated calendar:");
+            showCalendar(live, minTime, maxTime);
         }
-
-        Schedule schedule = new Schedule(minTime, maxTime); // Initialize a Schedule object
-         
-        // Iterate the course(s) the student selected
-        for (int i = 0; i < elearn.courses.size(); i++) {
-            String calendarUrl = String.format(
-                "https://elearn.volstate.edu/d2l/api/le/1.67/%s/calendar/events/",
-                 elearn.courses.get(i).id
-            );
-
-            // Make a GET request to the API endpoint responsible for showing all the calendar events for the student's selected course
-            var calendarEvents = Networking.getJSONArray(calendarUrl, "Authorization", "Bearer " + elearn.auth.token);
-
-            // Parse the JSON array and add each calendar event to the schedule
-            schedule.addCalendar(calendarEvents);
-        }
+    }
+    
+    /*
+        @dataset The calendar events to show
+        @minTime The requested time in milliseconds to start showing calendar events from
+        @maxTime The requested time in milliseconds to stop showing calendar events from. If it is 0, then there is no limit
+    */
+    private void showCalendar(Dataset dataset, long minTime, long maxTime) {
+        Schedule schedule = dataset.schedule;
+        long rangeEnd = maxTime == 0 ? Long.MAX_VALUE : maxTime;
         
-        // If schedule does not have any events stored, then stop the function here
-        if (schedule.items.isEmpty()) {
+        if (dataset.fromSnapshot)
+            System.out.printf("Last updated %s. Checking eLearn for changes...%n", Schedule.epochToTimestamp(dataset.fetchedAt));
+        
+        // If schedule does not have any events stored in the requested range, then stop the function here
+        int rows = schedule.items.countInRange(minTime, rangeEnd);
+        
+        if (rows == 0) {
             System.out.println("There are no calendar events available for your courses");
             return;
         }
         
-        System.out.printf("--------------------------------------------------------------%n");
-        System.out.printf("*                       Calendar Events                      *%n");
-        System.out.printf("--------------------------------------------------------------%n");
-        System.out.printf("| %-30s | %-25s |%n", "            Event", "     Available Until");
-        System.out.printf("--------------------------------------------------------------%n");
-
-        // Iterate through the schedule and display each calendar event
-        schedule.items.forEach((deadline, list) -> {
-            String deadlineTimestamp = Schedule.epochToTimestamp(deadline); // Get the deadline of the calendar events as a timestamp string in local time
-
-            // Iterate the list of events stored for the current calendar deadline and display them
-            list.forEach((event) -> {
-                // Display the calendar event
-                String title = event.getTitle();
-                
-                // Cut off title if too long
-                if (title.length() > 30)
-                    title = title.substring(0, 27).concat("...");
-                
-                System.out.printf("| %-30s | %-25s |%n", title, deadlineTimestamp);
-            });
-        });      
+        var render = Profiling.begin(new RenderEvent());
+        
+        var table = new TableRenderer("Calendar Events",
+            new TableRenderer.Column("Event", 30),
+            new TableRenderer.Column("Available Until", 25));
         
-        System.out.printf("--------------------------------------------------------------%n");
+        // Iterate through the events in the requested range and add each calendar event to the table in order of its end time
+        schedule.items.forEachInRange(minTime, rangeEnd, (deadline, event) -> table.addRow(event.getTitle(), Schedule.epochToTimestamp(deadline)));
         
-        System.out.println();
+        table.print();
+        Profiling.endRender(render, rows);
     }
 }
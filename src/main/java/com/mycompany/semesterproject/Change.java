@@ -0,0 +1,33 @@
+package com.mycompany.semesterproject;
+
+import org.json.JSONObject;
+
+// One difference between the previous sync and this one
+class Change {
+    public final Course course; // The course the item belongs to
+    public final String kind; // "deadline", "grade" or "event"
+    public final String type; // "added", "moved", "submitted", "unsubmitted", "changed" or "removed"
+    public final String title; // The name of the item
+    public final Object before, after; // The old and new value: an ISO-8601 timestamp for times, a fraction for grades, or JSONObject.NULL if there is none
+    
+    public Change(Course course, String kind, String type, String title, Object before, Object after) {
+        this.course = course;
+        this.kind = kind;
+        this.type = type;
+        this.title = title;
+        this.before = before;
+        this.after = after;
+    }
+    
+    // @return The change as a JSON object
+    public JSONObject toJSON() {
+        return new JSONObject()
+            .put("courseId", course.id)
+            .put("course", course.name)
+            .put("kind", kind)
+            .put("type", type)
+            .put("title", title)
+            .put("before", before)
+            .put("after", after);
+    }
+}
@@ -23,6 +23,15 @@ public class Console {
         }
     }
     
+    /*
+        @prompt The prompt to display to the user before reading input
+        @return The user's input as a string, which may be empty
+    */
+    public static String getLine(String prompt) {
+        System.out.print(prompt);
+        return sc.hasNextLine() ? sc.nextLine() : "";
+    }
+    
     /*
         @prompt The prompt to display to the user before reading input
         @return The user's input as an integer
@@ -0,0 +1,88 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// The student's resolved courses, saved to disk so the next launch does not have to discover them again
+public class CourseCache {
+    public long savedAt; // The time in milliseconds when the courses were discovered
+    public int enrollmentCount; // The number of enrollments the enrollments endpoint listed when the courses were discovered
+    public ArrayList<Course> courses; // The resolved courses in enrollment order
+    
+    public CourseCache(long savedAt, int enrollmentCount, ArrayList<Course> courses) {
+        this.savedAt = savedAt;
+        this.enrollmentCount = enrollmentCount;
+        this.courses = courses;
+    }
+    
+    // @return True if every enrollment was resolved to a course. A course that failed to resolve would stay hidden for the whole TTL if these were saved
+    public boolean isComplete() {
+        return courses.size() == enrollmentCount;
+    }
+    
+    /*
+        @ttlMillis How long the courses stay valid after they were discovered
+        @return True if the courses are older than ttlMillis, false otherwise.
+    */
+    public boolean isExpired(long ttlMillis) {
+        return System.currentTimeMillis() - this.savedAt >= ttlMillis;
+    }
+    
+    /*
+        @sessionFilename The file name the student's session cookie is stored in. The course cache is stored next to it.
+        @userId The student's numerical ID on d2l
+        @return The path of the course cache file for the student
+    */
+    public static Path getPath(String sessionFilename, String userId) {
+        return Path.of(sessionFilename).toAbsolutePath().resolveSibling("courses-" + userId + ".json");
+    }
+    
+    /*
+        @path The path of the course cache file
+        @return The saved courses, or null if the file does not exist or could not be read
+    */
+    public static CourseCache load(Path path) {
+        try {
+            var json = new JSONObject(Files.readString(path));
+            var list = json.getJSONArray("courses");
+            var courses = new ArrayList<Course>();
+            
+            for (int i = 0; i < list.length(); i++) {
+                var course = list.getJSONObject(i);
+                courses.add(new Course(course.getString("id"), course.getString("name")));
+            }
+            
+            return new CourseCache(json.getLong("savedAt"), json.getInt("enrollmentCount"), courses);
+        } catch (IOException | JSONException ex) {
+            return null;
+        }
+    }
+    
+    // @path The path of the course cache file to write
+    public void save(Path path) {
+        var list = new JSONArray();
+        
+        for (Course course : courses) {
+            var obj = new JSONObject();
+            obj.put("id", course.id);
+            obj.put("name", course.name);
+            list.put(obj);
+        }
+        
+        var json = new JSONObject();
+        json.put("savedAt", savedAt);
+        json.put("enrollmentCount", enrollmentCount);
+        json.put("courses", list);
+        
+        try {
+            Files.writeString(path, json.toString());
+        } catch (IOException ex) {
+            System.out.println("Warning! Failed to save the course list");
+        }
+    }
+}
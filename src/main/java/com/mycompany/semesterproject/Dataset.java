@@ -0,0 +1,125 @@
+package com.mycompany.semesterproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// An unfiltered Schedule downloaded once per session, so different time windows can be shown without downloading again
+public class Dataset {
+    public final Schedule schedule; // Every item that was downloaded, with no time limit
+    public final long fetchedAt; // The time in milliseconds when the items were downloaded
+    private final List<String> courseIds; // The IDs of the courses the items were downloaded for
+    public final boolean fromSnapshot; // True if the items were read from the snapshot saved by an earlier launch instead of downloaded
+    
+    /*
+        @schedule The downloaded items
+        @courses The courses the items were downloaded for
+    */
+    public Dataset(Schedule schedule, List<Course> courses) {
+        this.schedule = schedule;
+        this.fetchedAt = System.currentTimeMillis();
+        this.courseIds = new ArrayList<>();
+        this.fromSnapshot = false;
+        
+        for (Course course : courses)
+            this.courseIds.add(course.id);
+    }
+    
+    // Used when the items are read back from a snapshot
+    private Dataset(Schedule schedule, List<String> courseIds, long fetchedAt) {
+        this.schedule = schedule;
+        this.fetchedAt = fetchedAt;
+        this.courseIds = courseIds;
+        this.fromSnapshot = true;
+    }
+    
+    /*
+        @maxAgeMillis How long downloaded items can be used before they must be downloaded again
+        @courses The courses the student currently has selected
+        @return True if the items are younger than maxAgeMillis and were downloaded for the same courses, false otherwise.
+    */
+    public boolean isFresh(long maxAgeMillis, List<Course> courses) {
+        return System.currentTimeMillis() - fetchedAt < maxAgeMillis && isFor(courses);
+    }
+    
+    /*
+        @courses The courses the student currently has selected
+        @return True if the items were downloaded for exactly these courses, false otherwise.
+    */
+    public boolean isFor(List<Course> courses) {
+        if (courses.size() != courseIds.size())
+            return false;
+        
+        for (int i = 0; i < courses.size(); i++) {
+            if (!courses.get(i).id.equals(courseIds.get(i)))
+                return false;
+        }
+        
+        return true;
+    }
+    
+    /*
+        Writes the items as the download time, the course IDs, and then each item's key, title and epoch.
+        
+        @output The stream to write the items to
+    */
+    public void write(DataOutputStream output) throws IOException {
+        output.writeLong(fetchedAt);
+        output.writeInt(courseIds.size());
+        
+        for (String id : courseIds)
+            output.writeUTF(id);
+        
+        output.writeInt(schedule.items.size());
+        
+        // forEach can't throw an IOException, so the first one is kept and thrown after the loop
+        IOException[] failure = new IOException[1];
+        
+        schedule.items.forEach((key, item) -> {
+            if (failure[0] != null)
+                return;
+            
+            try {
+                output.writeLong(key);
+                output.writeLong(item.epoch);
+                output.writeUTF(item.title);
+            } catch (IOException ex) {
+                failure[0] = ex;
+            }
+        });
+        
+        if (failure[0] != null)
+            throw failure[0];
+    }
+    
+    /*
+        @input A stream positioned at items written by write
+        @return The items, marked as coming from a snapshot
+    */
+    public static Dataset read(DataInputStream input) throws IOException {
+        long fetchedAt = input.readLong();
+        int courseCount = input.readInt();
+        var courseIds = new ArrayList<String>(courseCount);
+        
+        for (int i = 0; i < courseCount; i++)
+            courseIds.add(input.readUTF());
+        
+        int itemCount = input.readInt();
+        var schedule = new Schedule(0, 0);
+        
+        for (int i = 0; i < itemCount; i++) {
+            long key = input.readLong();
+            long epoch = input.readLong();
+            schedule.items.add(key, new Assignment(input.readUTF(), epoch));
+        }
+        
+        return new Dataset(schedule, courseIds, fetchedAt);
+    }
+    
+    // @return How long the items can be used before they are downloaded again, from the elearn.dataset.maxAgeSeconds setting
+    public static long getMaxAgeMillis() {
+        return Settings.getLong("elearn.dataset.maxAgeSeconds", 300) * 1000;
+    }
+}
@@ -2,10 +2,12 @@ package com.mycompany.semesterproject;
 
 public class Deadlines extends Menu {
     private eLearn elearn;
+    private LiveDataset assignments; // Every assignment for the selected courses, with no time limit
     
     public Deadlines(eLearn elearn) {
-        super("Deadlines for Today", "Deadlines for the Week", "Deadlines for the Month", "All Upcoming Deadlines", "Go Back");
+        super("Deadlines for Today", "Deadlines for the Week", "Deadlines for the Month", "All Upcoming Deadlines", "Refresh", "Go Back");
         this.elearn = elearn;
+        this.assignments = new LiveDataset(elearn, Snapshot.Kind.DEADLINES, "deadlines", Queries::fetchAssignments);
     }
     
     @Override
@@ -18,76 +20,92 @@ public class Deadlines extends Menu {
             option = this.getSelection();
             System.out.println();
             
-            switch (option) {
-                case 1 -> {
-                    displayDeadlines(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24)); // Deadlines for today
-                }
-                case 2 -> {
-                    displayDeadlines(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 7)); // Deadlines for the week
-                }
-                case 3 -> {
-                    displayDeadlines(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 31)); // Deadlines for the month
-                }
-                case 4 -> {
-                    displayDeadlines(System.currentTimeMillis(), 0); // All upcoming deadlines
+            // Each selection is one action in a flight recording, so its phases can be grouped together
+            var action = Profiling.action(this.options[option - 1]);
+            try {
+                switch (option) {
+                    case 1 -> {
+                        displayDeadlines(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24)); // Deadlines for today
+                    }
+                    case 2 -> {
+                        displayDeadlines(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 7)); // Deadlines for the week
+                    }
+                    case 3 -> {
+                        displayDeadlines(System.currentTimeMillis(), System.currentTimeMillis() + (1000L * 60 * 60 * 24 * 31)); // Deadlines for the month
+                    }
+                    case 4 -> {
+                        displayDeadlines(System.currentTimeMillis(), 0); // All upcoming deadlines
+                    }
+                    case 5 -> {
+                        // Download the assignments again even if the ones we have aren't old yet
+                        if (assignments.get(true) != null)
+                            System.out.println("Deadlines refreshed\n");
+                    }
                 }
+            } finally {
+                action.close();
             }
         } while (option != this.options.length);
     }
     
+    /*
+        @minTime The requested time in milliseconds to start showing deadlines from
+        @maxTime The requested time in milliseconds to stop showing deadlines from. If it is 0, then there is no limit
+    */
     private void displayDeadlines(long minTime, long maxTime) {
-        // Make sure the student is authorized on the API before proceeding
-        if (!elearn.Authorize()) {
-            System.out.println("Error: Failed to get authorization token");
+        Dataset dataset = assignments.get(false);
+        
+        if (dataset == null)
             return;
-        }
         
-        Schedule schedule = new Schedule(minTime, maxTime); // Initialize Schedule object
-         
-        // Iterate through selected courses
-        for (int i = 0; i < elearn.courses.size(); i++) {
-            String assignmentsUrl = String.format(
-                "https://cfd2be83-bc1c-4a43-8ac3-469bc19bfc4a.sequences.api.brightspace.com/%s?deepEmbedEntities=1&embedDepth=1&filterOnDatesAndDepth=0",
-                 elearn.courses.get(i).id
-            );
-
-            // Make a GET request to the API endpoint responsible for listing all the student's assignments for the specified course
-            var assignmentsJSON = Networking.getJSON(assignmentsUrl, "Authorization", "Bearer " + elearn.auth.token);
-
-            // Parse the JSON object of assignments and add them to the schedule
-            schedule.addAssignments(assignmentsJSON);
+        showDeadlines(dataset, minTime, maxTime);
+        
+        // If the deadlines came from the offline snapshot, then show them again once the live ones have downloaded, but only if they changed
+        Dataset live = assignments.awaitRevalidation();
+        
+        if (live == null)
+            return;
+        
+        if (live.schedule.items.equalsInRange(dataset.schedule.items, minTime, maxTime == 0 ? Long.MAX_VALUE : maxTime))
+            System.out.println("No changes on eLearn since then");
+        else {
+            System.out.println("Updated deadlines:");
+            showDeadlines(live, minTime, maxTime);
         }
+    }
+    
+    /*
+        @dataset The assignments to show
+        @minTime The requested time in milliseconds to start showing deadlines from
+        @maxTime The requested time in milliseconds to stop showing deadlines from. If it is 0, then there is no limit
+    */
+    private void showDeadlines(Dataset dataset, long minTime, long maxTime) {
+        Schedule schedule = dataset.schedule;
+        long rangeEnd = maxTime == 0 ? Long.MAX_VALUE : maxTime;
+        
+        if (dataset.fromSnapshot)
+            System.out.printf("Last updated %s. Checking eLearn for changes...%n", Schedule.epochToTimestamp(dataset.fetchedAt));
         
-        // If the schedule is empty, then return here
-        if (schedule.items.isEmpty()) {
+        // If the schedule has no deadlines in the requested range, then return here
+        int rows = schedule.items.countInRange(minTime, rangeEnd);
+        
+        if (rows == 0) {
             System.out.println("There are no deadlines available for your courses");
             return;
         }
         
-        System.out.printf("------------------------------------------------------------------------------------------%n");
-        System.out.printf("*                                       Deadlines                                        *%n");
-        System.out.printf("------------------------------------------------------------------------------------------%n");
-        System.out.printf("| %-30s | %-25s | %-25s |%n", "          Assignment", "        Deadline", "        Submitted");
-        System.out.printf("------------------------------------------------------------------------------------------%n");
-
-        // Iterate through the schedule's items
-        schedule.items.forEach((deadline, list) -> {
-            String deadlineTimestamp = Schedule.epochToTimestamp(deadline); // Get the deadline timestamp
-
-            // Iterate through all the assignments that share the current deadline and display them
-            list.forEach((assignment) -> {
-                String title = assignment.getTitle(); // Assignment Name
-                
-                // Cut off title if too long
-                if (title.length() > 30)
-                    title = title.substring(0, 27).concat("...");        
-                
-                System.out.printf("| %-30s | %-25s | %-25s |%n", title, deadlineTimestamp, assignment.isSubmitted() ? assignment.getEpochTimestamp() : "N/A");
-            });
-        });
+        var render = Profiling.begin(new RenderEvent());
+        
+        var table = new TableRenderer("Deadlines",
+            new TableRenderer.Column("Assignment", 30),
+            new TableRenderer.Column("Deadline", 25),
+            new TableRenderer.Column("Submitted", 25));
         
-        System.out.printf("------------------------------------------------------------------------------------------%n");
+        // Iterate through the schedule's assignments in the requested range in deadline order and add them to the table
+        schedule.items.forEachInRange(minTime, rangeEnd, (deadline, assignment) ->
+            table.addRow(assignment.getTitle(), Schedule.epochToTimestamp(deadline), assignment.isSubmitted() ? assignment.getEpochTimestamp() : "N/A"));
         
-        System.out.println();
+        table.print();
+        Profiling.endRender(render, rows);
     }
 }
@@ -0,0 +1,125 @@
+package com.mycompany.semesterproject;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The classes of API endpoints the program calls. Each class has its own connect and request timeouts, and keeps
+    the recent response times used to decide when to send a hedged request.
+    Timeouts are set with elearn.timeout.<class>.connectMs and elearn.timeout.<class>.requestMs, Example: -Delearn.timeout.sequences.requestMs=60000
+*/
+public enum Endpoint {
+    AUTH("auth", 15000), // Login, the session check, the home page and the oauth2 token
+    ENROLLMENTS("enrollments", 15000), // The enrollments, course info and organizations endpoints used to discover courses
+    SEQUENCES("sequences", 30000), // The assignments of a course, which are the largest responses
+    GRADES("grades", 15000),
+    CALENDAR("calendar", 15000),
+    OTHER("other", 15000);
+    
+    public final String name; // The name used in settings and reports
+    private final Duration connectTimeout, requestTimeout;
+    private final LatencyWindow latencies; // Recent latencies of every original request, hedged or not, used for the hedging delay
+    private final AtomicLong requests, hedgesSent, hedgesWon; // Counters for measuring how much hedging helps and how much extra load it adds
+    private final LatencyWindow hedgedLatencies; // Recent latencies of requests that sent a hedge, measured to whichever response came first
+    
+    Endpoint(String name, long defaultRequestMillis) {
+        this.name = name;
+        this.connectTimeout = Duration.ofMillis(Settings.getLong("elearn.timeout." + name + ".connectMs", Settings.getLong("elearn.timeout.connectMs", 5000)));
+        this.requestTimeout = Duration.ofMillis(Settings.getLong("elearn.timeout." + name + ".requestMs", defaultRequestMillis));
+        this.latencies = new LatencyWindow(512);
+        this.hedgedLatencies = new LatencyWindow(512);
+        this.requests = new AtomicLong();
+        this.hedgesSent = new AtomicLong();
+        this.hedgesWon = new AtomicLong();
+    }
+    
+    /*
+        @uri The url of a request
+        @return The class of endpoint the url belongs to
+    */
+    public static Endpoint of(URI uri) {
+        String service = Urls.serviceOf(uri);
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        
+        if ("sequences".equals(service))
+            return SEQUENCES;
+        
+        if ("enrollments".equals(service) || "organizations".equals(service))
+            return ENROLLMENTS;
+        
+        if (path.contains("/grades/"))
+            return GRADES;
+        
+        if (path.contains("/calendar/"))
+            return CALENDAR;
+        
+        if (path.contains("/d2l/lp/auth/") || path.contains("/d2l/home") || path.contains("/d2l/lp/profile/"))
+            return AUTH;
+        
+        return OTHER;
+    }
+    
+    // @return How long to wait for a connection to the endpoint's host
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+    
+    // @return How long to wait for the response headers after the request is sent
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+    
+    /*
+        @return How many milliseconds to wait for a response before sending a hedged request, which is the p95 latency of recent requests.
+        Returns -1 if there aren't enough recent requests to know the p95 yet.
+    */
+    public long getHedgeDelay() {
+        return latencies.percentile(95, 20);
+    }
+    
+    /*
+        Every original request is recorded here, including the ones a hedge was sent for, so the p95 keeps seeing the slow requests.
+        If only the requests that answered before their hedge were recorded, the p95 would shrink and more and more requests would be hedged.
+        
+        @millis How long the request took from being sent until its response, without the time it waited in the limiters
+    */
+    public void recordLatency(long millis) {
+        requests.incrementAndGet();
+        latencies.add(millis);
+    }
+    
+    // @millis How long a request that sent a hedge took until the first of its responses arrived
+    public void recordHedgedLatency(long millis) {
+        hedgedLatencies.add(millis);
+    }
+    
+    public void recordHedgeSent() {
+        hedgesSent.incrementAndGet();
+    }
+    
+    public void recordHedgeWon() {
+        hedgesWon.incrementAndGet();
+    }
+    
+    // @return The number of requests that completed
+    public long getRequests() {
+        return requests.get();
+    }
+    
+    // @return The number of hedged requests that were sent, which is the extra load hedging added
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+    
+    // @return The number of hedged requests that answered before the original request
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+    
+    // @return A one line summary of the endpoint's hedging counters and latencies
+    public String summary() {
+        return String.format("%s: %d requests, p95 %dms, p99 %dms, %d hedges sent, %d won, hedged p99 %dms",
+            name, getRequests(), latencies.percentile(95, 1), latencies.percentile(99, 1), getHedgesSent(), getHedgesWon(), hedgedLatencies.percentile(99, 1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.mycompany.semesterproject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// The counters of one endpoint template
+class EndpointStats implements EndpointStatsMXBean {
+    private final String template;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder(), errors = new LongAdder(), bytesIn = new LongAdder(), bytesOut = new LongAdder();
+    private final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    
+    public EndpointStats(String template) {
+        this.template = template;
+    }
+    
+    /*
+        A response whose status isn't 2xx or 3xx is also counted as an error, even though the request itself didn't fail.
+        
+        @millis How long the request took
+        @status The response status code
+        @received The number of response body bytes
+        @sent The number of request body bytes
+    */
+    public void recordResponse(long millis, int status, long received, long sent) {
+        requests.increment();
+        
+        if (status < 200 || status >= 400)
+            errors.increment();
+        
+
+        latencies.record(millis);
+        statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        bytesIn.add(received);
+        bytesOut.add(sent);
+    }
+    
+    /*
+        @millis How long the request ran before it failed
+        @sent The number of request body bytes
+    */
+    public void recordError(long millis, long sent) {
+        requests.increment();
+        errors.increment();
+        latencies.record(millis);
+        bytesOut.add(sent);
+    }
+    
+    // @received More response body bytes, for bodies that are counted as they are read
+    public void recordBytesIn(long received) {
+        bytesIn.add(received);
+    }
+    
+    @Override
+    public String getTemplate() {
+        return template;
+    }
+    
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+    
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+    
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+    
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+    
+    @Override
+    public double getMeanMillis() {
+        return latencies.mean();
+    }
+    
+    @Override
+    public long getP50Millis() {
+        return latencies.percentile(50);
+    }
+    
+    @Override
+    public long getP95Millis() {
+        return latencies.percentile(95);
+    }
+    
+    @Override
+    public long getP99Millis() {
+        return latencies.percentile(99);
+    }
+    
+    @Override
+    public Map<String, Long> getStatusCounts() {
+        var counts = new TreeMap<String, Long>();
+        statuses.forEach((status, count) -> counts.put(String.valueOf(status), count.sum()));
+        return counts;
+    }
+    
+    // @return A one line summary of the template's counters and latencies
+    public String summary() {
+        return String.format("%-17s %6d requests %4d errors  p50 %5dms  p95 %5dms  p99 %5dms  in %9d B  out %7d B  statuses %s",
+            template, getRequests(), getErrors(), getP50Millis(), getP95Millis(), getP99Millis(), getBytesIn(), getBytesOut(), getStatusCounts());
+    }
+}
@@ -0,0 +1,20 @@
+package com.mycompany.semesterproject;
+
+import java.util.Map;
+
+/*
+    The statistics of one endpoint template, published over JMX as com.mycompany.semesterproject:type=Endpoint,name=<template>.
+    Open them in JConsole or VisualVM while the program runs. JMX requires the interface to be public.
+*/
+public interface EndpointStatsMXBean {
+    String getTemplate();
+    long getRequests();
+    long getErrors();
+    long getBytesIn();
+    long getBytesOut();
+    double getMeanMillis();
+    long getP50Millis();
+    long getP95Millis();
+    long getP99Millis();
+    Map<String, Long> getStatusCounts();
+}
@@ -4,10 +4,12 @@ import java.text.NumberFormat;
 
 public class Grades extends Menu {
     private eLearn elearn;
+    private LiveDataset grades; // Every grade for the selected courses, sorted by date
     
     public Grades(eLearn elearn) {
         super("Display Grades by Grade", "Display Grades by Date", "Go Back");
         this.elearn = elearn;
+        this.grades = new LiveDataset(elearn, Snapshot.Kind.GRADES, "grades", (session, courses) -> Queries.fetchGrades(session, courses, true));
     }
     
     @Override
@@ -20,42 +22,61 @@ public class Grades extends Menu {
             option = this.getSelection();
             System.out.println();
             
-            switch (option) {
-                case 1 -> {
-                    displayGrades(false); // Display grades by Grade
-                }
-                case 2 -> {
-                    displayGrades(true); // Display grades by Date
+            // Each selection is one action in a flight recording, so its phases can be grouped together
+            var action = Profiling.action(this.options[option - 1]);
+            try {
+                switch (option) {
+                    case 1 -> {
+                        displayGrades(false); // Display grades by Grade
+                    }
+                    case 2 -> {
+                        displayGrades(true); // Display grades by Date
+                    }
                 }
+            } finally {
+                action.close();
             }
         } while (option != this.options.length);
     } 
     
+    // @sortByDate Whether or not to sort by date. If false, then it will sort by grade.
     private void displayGrades(boolean sortByDate) {
-        // Make sure student is API authorized before proceeding
-        if (!elearn.Authorize()) {
-            System.out.println("Error: Failed to get authorization token");
+        Dataset dataset = grades.get(false);
+        
+        if (dataset == null)
             return;
-        }
         
-        Schedule schedule = new Schedule(0, 0); // Initialize schedule object
-         
-        for (int i = 0; i < elearn.courses.size(); i++) {
-            String gradesUrl = String.format(
-                "https://elearn.volstate.edu/d2l/api/le/1.67/%s/grades/values/%s/",
-                 elearn.courses.get(i).id,
-                 elearn.auth.userId
-            );
-
-            // Make a GET request to the API endpoint responsible for showing all the student's grades for the specified course
-            var gradesJSON = Networking.getJSONArray(gradesUrl, "Authorization", "Bearer " + elearn.auth.token);
-
-            // Add all the student's grades for the course to the schedule object
-            schedule.addGrades(gradesJSON, sortByDate);
+        showGrades(dataset, sortByDate);
+        
+        // If the grades came from the offline snapshot, then show them again once the live ones have downloaded, but only if they changed
+        // Both are sorted by date, so comparing them that way covers sorting by grade too
+        Dataset live = grades.awaitRevalidation();
+        
+        if (live == null)
+            return;
+        
+        if (live.schedule.items.equalsInRange(dataset.schedule.items, Long.MIN_VALUE, Long.MAX_VALUE))
+            System.out.println("No changes on eLearn since then");
+        else {
+            System.out.println("Updated grades:");
+            showGrades(live, sortByDate);
         }
+    }
+    
+    /*
+        @dataset The grades to show, sorted by date
+        @sortByDate Whether or not to sort by date. If false, then it will sort by grade.
+    */
+    private void showGrades(Dataset dataset, boolean sortByDate) {
+        Schedule schedule = sortByDate ? dataset.schedule : sortByGrade(dataset.schedule);
+        
+        if (dataset.fromSnapshot)
+            System.out.printf("Last updated %s. Checking eLearn for changes...%n", Schedule.epochToTimestamp(dataset.fetchedAt));
         
         // If our schedule does not have any items stored, then end the function here
-        if (schedule.items.isEmpty()) {
+        int rows = schedule.items.size();
+        
+        if (rows == 0) {
             System.out.println("There are no grades available for your courses");
             return;
         }
@@ -64,35 +85,37 @@ public class Grades extends Menu {
         var percentFormatter = NumberFormat.getPercentInstance();
         percentFormatter.setMinimumFractionDigits(2);
 
-        System.out.printf("------------------------------------------------------------------------%n");
-        System.out.printf("*                                Grades                                *%n");
-        System.out.printf("------------------------------------------------------------------------%n");
-        System.out.printf("| %-30s | %-25s | %-7s |%n", "             Name", "       Date Graded", " Grade");
-        System.out.printf("------------------------------------------------------------------------%n");
- 
+        var render = Profiling.begin(new RenderEvent());
+        
+        var table = new TableRenderer("Grades",
+            new TableRenderer.Column("Name", 30),
+            new TableRenderer.Column("Date Graded", 25),
+            new TableRenderer.Column("Grade", 7));
+        
         // Iterate through each item in the schedule
-        schedule.items.forEach((number, list) -> {
-            // number is either the grade if sortByDate is false, or it is the epoch of when it was graded if sortByDate is true.
-            // Iterate through each item in the list
-            list.forEach((item) -> {
-                String title = item.getTitle(); // Grade Name
-                
-                // Cut off title if too long
-                if (title.length() > 30)
-                    title = title.substring(0, 27).concat("...");                
-                
-                // Get the grade and divide by 10,000 because we multiplied by 10,000 when stored the grade as a long to keep precision
-                // Grade will be in item.epoch if sorting by date, or it will be the key this map pair, "number", if sorting by grade.
-                double grade = (sortByDate ? item.epoch : number) / 10000.0;
-                String timestamp = sortByDate ? Schedule.epochToTimestamp(number) : Schedule.epochToTimestamp(item.epoch); // Get the timestamp of when it was graded
-                
-                // Display the grade
-                System.out.printf("| %-30s | %-25s | %-7s |%n", title, timestamp, percentFormatter.format(grade));
-            });
+        // number is either the grade if sortByDate is false, or it is the epoch of when it was graded if sortByDate is true.
+        schedule.items.forEach((number, item) -> {
+            // Get the grade and divide by 10,000 because we multiplied by 10,000 when stored the grade as a long to keep precision
+            // Grade will be in item.epoch if sorting by date, or it will be the key, "number", if sorting by grade.
+            double grade = (sortByDate ? item.epoch : number) / 10000.0;
+            String timestamp = sortByDate ? Schedule.epochToTimestamp(number) : Schedule.epochToTimestamp(item.epoch); // Get the timestamp of when it was graded
+            
+            table.addRow(item.getTitle(), timestamp, percentFormatter.format(grade));
         });
         
-        System.out.printf("------------------------------------------------------------------------%n");
+        table.print();
+        Profiling.endRender(render, rows);
+    }
+    
+    /*
+        The grades are downloaded once sorted by date, so sorting by grade swaps each item's key and epoch the same way Schedule.addGrades does.
         
-        System.out.println();
+        @byDate Grades keyed by the date they were graded, with the grade in each item's epoch
+        @return The same grades keyed by the grade, with the date in each item's epoch
+    */
+    private static Schedule sortByGrade(Schedule byDate) {
+        var byGrade = new Schedule(0, 0);
+        byDate.items.forEach((date, item) -> byGrade.items.add(item.epoch, new Assignment(item.title, date)));
+        return byGrade;
     }
 }
@@ -0,0 +1,18 @@
+package com.mycompany.semesterproject;
+
+// One item as it was seen by one download
+class HistoryRecord {
+    public final long fetchedAt; // The time in milliseconds when the item was downloaded
+    public final Snapshot.Kind kind; // Whether the item is a deadline, grade or calendar event
+    public final String courseId, title;
+    public final long key, epoch; // The item's key and epoch as stored in a Schedule. Grades are always stored keyed by date, with the grade in epoch
+    
+    public HistoryRecord(long fetchedAt, Snapshot.Kind kind, String courseId, String title, long key, long epoch) {
+        this.fetchedAt = fetchedAt;
+        this.kind = kind;
+        this.courseId = courseId;
+        this.title = title;
+        this.key = key;
+        this.epoch = epoch;
+    }
+}
@@ -0,0 +1,590 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/*
+    Every deadline, grade and calendar event the program has downloaded, so reports over the whole semester can be run locally.
+    
+    Records are only ever appended, to numbered segment files in the history-<userId> directory next to the session file. When the newest segment reaches
+    elearn.history.segmentBytes, it is sealed and a new one is started. Each segment keeps a sparse index of the download time of the
+    first record in every block of INDEX_INTERVAL bytes, so a range query binary searches the index and reads only the blocks in the
+    range from the memory-mapped segment. The index of a sealed segment is saved next to it so it doesn't have to be rebuilt.
+    
+    The same items are downloaded again and again, so compact rewrites the sealed segments keeping only the records where an item
+    first appeared or changed. An item is its kind, course, title and key, since titles like a weekly "Lecture" repeat within a course.
+    
+    A menu and a batch run for the same session can have the history open at once. Every append, query and compaction holds the lock
+    on the history.lock file, and first re-reads the directory, so it sees what the other process appended, started or compacted.
+    
+    A segment file is a magic number and version, then records of:
+        int length (of the rest of the record), long fetchedAt, byte kind, long key, long epoch, courseId and title as a short length and UTF-8 bytes
+*/
+public class HistoryStore {
+    private static final int MAGIC = 0x454C4853; // "ELHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_INTERVAL = 4096; // The number of bytes between two sparse index entries
+    private static final String LOCK_FILE = "history.lock";
+    
+    // A FileLock is held by the whole JVM, so two stores for the same directory in one process also take this lock
+    private static final ConcurrentHashMap<Path, ReentrantLock> processLocks = new ConcurrentHashMap<>();
+    
+    // Receives each record of a range query in the order they were appended
+    public interface Visitor {
+        void visit(HistoryRecord record);
+    }
+    
+    // Work done while holding the history's lock
+    private interface LockedWork<T> {
+        T run() throws IOException;
+    }
+    
+    // One segment file and its sparse time index
+    private static class Segment {
+        final int number;
+        final Path path;
+        Object fileKey; // Identifies the file the index was built from, so a segment replaced by a compaction is noticed
+        long size; // The number of bytes of complete records, including the header
+        long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE; // The download times of the first and last records
+        long[] indexTimes = new long[16]; // The download time of the first record in each block
+        long[] indexOffsets = new long[16]; // The offset of that record
+        int indexCount;
+        long nextIndexAt; // Records at or past this offset start a new index entry
+        
+        Segment(int number, Path path) {
+            this.number = number;
+            this.path = path;
+        }
+        
+        // Updates the time range and index with a record that was appended at offset
+        void indexRecord(long time, long offset, int length) {
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            
+            if (offset >= nextIndexAt) {
+                if (indexCount == indexTimes.length) {
+                    indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+                    indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+                }
+                
+                indexTimes[indexCount] = time;
+                indexOffsets[indexCount] = offset;
+                indexCount++;
+                nextIndexAt = offset - offset % INDEX_INTERVAL + INDEX_INTERVAL;
+            }
+            
+            size = offset + 4 + length;
+        }
+        
+        // @return The offset of the last indexed record downloaded before time, where a scan for time can start
+        long seek(long time) {
+            int low = 0, high = indexCount - 1, found = -1;
+            
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                
+                if (indexTimes[middle] < time) {
+                    found = middle;
+                    low = middle + 1;
+                }
+                else
+                    high = middle - 1;
+            }
+            
+            return found < 0 ? HEADER_BYTES : indexOffsets[found];
+        }
+        
+        Path indexPath() {
+            return path.resolveSibling(path.getFileName() + ".idx");
+        }
+    }
+    
+    private final Path directory;
+    private final long segmentBytes;
+    private final ArrayList<Segment> segments = new ArrayList<>(); // Oldest first. The last one is the one being appended to
+    private long lastTime; // The download time of the newest record. Records are never stored with an older time, so every segment stays in time order
+    
+    private HistoryStore(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+    
+    /*
+        @sessionFilename The file name the student's session cookie is stored in. The history is stored next to it.
+        @userId The student's numerical ID on d2l
+        @return The directory of the history for the student
+    */
+    public static Path getPath(String sessionFilename, String userId) {
+        return Path.of(sessionFilename).toAbsolutePath().resolveSibling("history-" + userId);
+    }
+    
+    /*
+        @directory The directory of the history. It is created if it doesn't exist
+        @return The opened history
+    */
+    public static HistoryStore open(Path directory) throws IOException {
+        var store = new HistoryStore(directory, Settings.getLong("elearn.history.segmentBytes", 8L * 1024 * 1024));
+        Files.createDirectories(directory);
+        store.locked(() -> null); // Reads the segments already in the directory
+        
+        return store;
+    }
+    
+    /*
+        Appends one download of items for one course.
+        
+        @fetchedAt The time in milliseconds when the items were downloaded
+        @kind Whether the items are deadlines, grades or calendar events
+        @courseId The course the items belong to
+        @items The downloaded items, keyed the way Schedule stores them. Grades must be keyed by date
+    */
+    public synchronized void append(long fetchedAt, Snapshot.Kind kind, String courseId, ScheduleIndex items) throws IOException {
+        if (items.isEmpty())
+            return;
+        
+        locked(() -> {
+            // lastTime was just re-read from the directory, so the records stay in time order even if another process appended newer ones
+            long time = Math.max(fetchedAt, lastTime);
+            byte[] course = courseId.getBytes(StandardCharsets.UTF_8);
+            var buffer = new ByteBufferBuilder();
+            
+            items.forEach((key, item) -> {
+                byte[] title = truncate(item.title.getBytes(StandardCharsets.UTF_8));
+                buffer.record(time, kind, key, item.epoch, course, title);
+            });
+            
+            Segment segment = getWritableSegment(buffer.size());
+            
+            try (var channel = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+                // A crash may have left half a record at the end
+                if (channel.size() != segment.size)
+                    channel.truncate(segment.size);
+                
+                channel.position(segment.size);
+                ByteBuffer bytes = buffer.toByteBuffer();
+                
+                while (bytes.hasRemaining())
+                    channel.write(bytes);
+            }
+            
+            // Index the new records from the bytes we just wrote instead of reading them back
+            ByteBuffer written = buffer.toByteBuffer();
+            long offset = segment.size;
+            
+            while (written.hasRemaining()) {
+                int length = written.getInt();
+                segment.indexRecord(time, offset, length);
+                written.position(written.position() + length);
+                offset += 4 + length;
+            }
+            
+            lastTime = time;
+            return null;
+        });
+    }
+    
+    /*
+        @from The earliest download time in milliseconds to return
+        @to The latest download time in milliseconds to return
+        @visitor Called with every record downloaded in the range, oldest first
+    */
+    public synchronized void query(long from, long to, Visitor visitor) throws IOException {
+        locked(() -> {
+            for (Segment segment : segments) {
+                if (segment.size <= HEADER_BYTES || segment.maxTime < from || segment.minTime > to)
+                    continue;
+                
+                try (var channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+                    map.position((int)segment.seek(from));
+                    
+                    while (map.hasRemaining()) {
+                        HistoryRecord record = readRecord(map);
+                        
+                        if (record.fetchedAt > to)
+                            return null; // Records are in time order, so nothing later in the history can be in range
+                        
+                        if (record.fetchedAt >= from)
+                            visitor.visit(record);
+                    }
+                }
+            }
+            
+            return null;
+        });
+    }
+    
+    /*
+        Runs work while holding the lock of the history, after re-reading the segments from the directory.
+        
+        @work The work to run
+        @return What the work returned
+    */
+    private <T> T locked(LockedWork<T> work) throws IOException {
+        ReentrantLock processLock = processLocks.computeIfAbsent(directory.toAbsolutePath().normalize(), key -> new ReentrantLock());
+        processLock.lock();
+        
+        try (var channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.lock(); // Released when the channel is closed
+            refresh();
+            return work.run();
+        } finally {
+            processLock.unlock();
+        }
+    }
+    
+    /*
+        Brings the segments up to date with the directory. Another process may have appended to the newest segment, started a new one,
+        or compacted the sealed ones since this store last looked. Segments that haven't changed keep their index.
+    */
+    private void refresh() throws IOException {
+        var known = new HashMap<Integer, Segment>();
+        
+        for (Segment segment : segments)
+            known.put(segment.number, segment);
+        
+        List<String> names;
+        
+        try (Stream<Path> files = Files.list(directory)) {
+            names = files.map(path -> path.getFileName().toString())
+                .filter(name -> name.matches("segment-\\d+\\.log"))
+                .sorted()
+                .toList();
+        }
+        
+        segments.clear();
+        lastTime = 0;
+        
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            int number = Integer.parseInt(name.substring(8, name.length() - 4));
+            Path path = directory.resolve(name);
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+            Segment segment = known.get(number);
+            
+            if (segment != null && Objects.equals(segment.fileKey, fileKey) && attributes.size() >= segment.size) {
+                // The same file, so only records appended after the ones already indexed need to be read
+                if (attributes.size() > segment.size)
+                    scan(segment, segment.size);
+            }
+            else {
+                segment = new Segment(number, path);
+                
+                // Sealed segments never change, so their saved index can be trusted if it was saved for the same size
+                if (i == names.size() - 1 || !loadIndex(segment))
+                    rebuildIndex(segment);
+            }
+            
+            segment.fileKey = fileKey;
+            segments.add(segment);
+            lastTime = Math.max(lastTime, segment.maxTime);
+        }
+    }
+    
+    /*
+        Rewrites the sealed segments, keeping only the records where an item was seen for the first time or its epoch changed since it
+        was last seen. An item with a new key, such as a deadline that was moved, is a new item. The segment being appended to is left alone.
+        The compacted segments replace the old ones one file at a time, so a crash can leave some records twice but never loses one.
+        
+        @return The number of records that were removed
+    */
+    public synchronized int compact() throws IOException {
+        return locked(this::compactSealed);
+    }
+    
+    // Compacts the sealed segments. The caller holds the lock
+    private int compactSealed() throws IOException {
+        if (segments.size() < 2)
+            return 0;
+        
+        var sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+        var latest = new HashMap<String, Long>(); // The last epoch kept for each item
+        var output = new ArrayList<Segment>();
+        var buffer = new ByteBufferBuilder();
+        int removed = 0;
+        int number = sealed.get(0).number;
+        
+        for (Segment segment : sealed) {
+            try (var channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+                map.position(HEADER_BYTES);
+                
+                while (map.hasRemaining()) {
+                    HistoryRecord record = readRecord(map);
+                    String item = record.kind.ordinal() + "\u0000" + record.courseId + "\u0000" + record.key + "\u0000" + record.title;
+                    Long last = latest.put(item, record.epoch);
+                    
+                    if (last != null && last == record.epoch) {
+                        removed++;
+                        continue;
+                    }
+
+                    buffer.record(record.fetchedAt, record.kind, record.key, record.epoch, record.courseId.getBytes(StandardCharsets.UTF_8), record.title.getBytes(StandardCharsets.UTF_8));
+                    
+                    // Keep the compacted segments about as big as new ones
+                    if (buffer.size() >= segmentBytes - HEADER_BYTES) {
+                        output.add(writeCompacted(number++, buffer));
+                        buffer = new ByteBufferBuilder();
+                    }
+                }
+            }
+        }
+        
+        if (buffer.size() > 0 || output.isEmpty())
+            output.add(writeCompacted(number++, buffer));
+        
+        // The compacted segments have to fit in the numbers of the old ones, which only fails if nothing could be removed
+        if (output.size() > sealed.size()) {
+            for (Segment compacted : output) {
+                Files.deleteIfExists(compacted.path);
+                Files.deleteIfExists(compacted.indexPath());
+            }
+            
+            return 0;
+        }
+        
+        // Move each compacted segment over the old segment with the same number, then delete the old segments that weren't replaced
+        for (Segment compacted : output) {
+            Path target = directory.resolve(String.format("segment-%06d.log", compacted.number));
+            Files.move(compacted.path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(compacted.indexPath(), target.resolveSibling(target.getFileName() + ".idx"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        
+        for (Segment segment : sealed) {
+            if (segment.number >= number) {
+                Files.deleteIfExists(segment.path);
+                Files.deleteIfExists(segment.indexPath());
+            }
+        }
+        
+        // Reopen the rewritten segments so their paths and indexes match the files
+        var active = segments.get(segments.size() - 1);
+        segments.clear();
+        
+        for (Segment compacted : output) {
+            var segment = new Segment(compacted.number, directory.resolve(String.format("segment-%06d.log", compacted.number)));
+            
+            if (!loadIndex(segment))
+                rebuildIndex(segment);
+            
+            segments.add(segment);
+        }
+        
+        segments.add(active);
+        return removed;
+    }
+    
+    // @return The number of segment files
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+    
+    // Writes compacted records to a temporary segment file and its index
+    private Segment writeCompacted(int number, ByteBufferBuilder buffer) throws IOException {
+        var segment = new Segment(number, directory.resolve(String.format("segment-%06d.log.compact", number)));
+        
+        try (var channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(header());
+            ByteBuffer bytes = buffer.toByteBuffer();
+            
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+        }
+        
+        rebuildIndex(segment);
+        saveIndex(segment);
+        
+        return segment;
+    }
+    
+    // @return The segment to append bytes to, sealing the current one and starting a new one if they don't fit
+    private Segment getWritableSegment(int bytes) throws IOException {
+        Segment current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        
+        if (current != null && (current.size == HEADER_BYTES || current.size + bytes <= segmentBytes))
+            return current;
+        
+        if (current != null)
+            saveIndex(current); // The segment is sealed now, so its index won't change again
+        
+        int number = current == null ? 1 : current.number + 1;
+        var segment = new Segment(number, directory.resolve(String.format("segment-%06d.log", number)));
+        
+        try (var channel = FileChannel.open(segment.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(header());
+        }
+        
+        var attributes = Files.readAttributes(segment.path, BasicFileAttributes.class);
+        segment.fileKey = attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        segment.size = HEADER_BYTES;
+        segment.nextIndexAt = HEADER_BYTES;
+        segments.add(segment);
+        
+        return segment;
+    }
+    
+    /*
+        Scans the records of a segment to find its time range and build its index. A record cut short by a crash is ignored and overwritten
+        by the next append.
+    */
+    private void rebuildIndex(Segment segment) throws IOException {
+        segment.indexCount = 0;
+        segment.nextIndexAt = HEADER_BYTES;
+        segment.size = HEADER_BYTES;
+        segment.minTime = Long.MAX_VALUE;
+        segment.maxTime = Long.MIN_VALUE;
+        
+        scan(segment, 0);
+    }
+    
+    /*
+        Adds the records from an offset to the end of a segment to its time range and index.
+        
+        @from The offset of the first record to read, or 0 to check the header and read every record
+    */
+    private void scan(Segment segment, long from) throws IOException {
+        try (var channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            
+            if (fileSize < HEADER_BYTES)
+                return;
+            
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            
+            if (from == 0 && (map.getInt() != MAGIC || map.getInt() != VERSION))
+                throw new IOException("Unknown history segment format in " + segment.path);
+            
+            if (from > 0)
+                map.position((int)from);
+            
+            while (map.remaining() >= 4) {
+                long offset = map.position();
+                int length = map.getInt();
+                
+                if (length < 8 || length > map.remaining())
+                    break;
+                
+                segment.indexRecord(map.getLong(), offset, length);
+                map.position((int)(offset + 4 + length));
+            }
+        }
+    }
+    
+    // @return True if the saved index of a sealed segment was loaded
+    private boolean loadIndex(Segment segment) {
+        try (var channel = FileChannel.open(segment.indexPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long size = map.getLong();
+            
+            if (size != Files.size(segment.path))
+                return false;
+            
+            segment.size = size;
+            segment.minTime = map.getLong();
+            segment.maxTime = map.getLong();
+            segment.indexCount = map.getInt();
+            segment.indexTimes = new long[Math.max(1, segment.indexCount)];
+            segment.indexOffsets = new long[Math.max(1, segment.indexCount)];
+            
+            for (int i = 0; i < segment.indexCount; i++) {
+                segment.indexTimes[i] = map.getLong();
+                segment.indexOffsets[i] = map.getLong();
+            }
+            
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            return false;
+        }
+    }
+    
+    private void saveIndex(Segment segment) throws IOException {
+        var bytes = ByteBuffer.allocate(28 + segment.indexCount * 16);
+        bytes.putLong(segment.size).putLong(segment.minTime).putLong(segment.maxTime).putInt(segment.indexCount);
+        
+        for (int i = 0; i < segment.indexCount; i++)
+            bytes.putLong(segment.indexTimes[i]).putLong(segment.indexOffsets[i]);
+        
+        Files.write(segment.indexPath(), bytes.array());
+    }
+    
+    // @return The record at the buffer's position, leaving the position after it
+    private static HistoryRecord readRecord(ByteBuffer map) {
+        int length = map.getInt();
+        int end = map.position() + length;
+        
+        long time = map.getLong();
+        var kind = Snapshot.Kind.values()[map.get()];
+        long key = map.getLong();
+        long epoch = map.getLong();
+        String courseId = readString(map);
+        String title = readString(map);
+        
+        map.position(end);
+        return new HistoryRecord(time, kind, courseId, title, key, epoch);
+    }
+    
+    private static String readString(ByteBuffer map) {
+        byte[] bytes = new byte[map.getShort() & 0xFFFF];
+        map.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+    }
+    
+    // @return The bytes cut to the longest length a record can store
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length <= 0xFFFF ? bytes : Arrays.copyOf(bytes, 0xFFFF);
+    }
+    
+    // Collects encoded records in memory so a whole download is written with one call
+    private static class ByteBufferBuilder {
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+        
+        void record(long time, Snapshot.Kind kind, long key, long epoch, byte[] courseId, byte[] title) {
+            int length = 8 + 1 + 8 + 8 + 2 + courseId.length + 2 + title.length;
+            ensure(4 + length);
+            
+            buffer.putInt(length).putLong(time).put((byte)kind.ordinal()).putLong(key).putLong(epoch);
+            buffer.putShort((short)courseId.length).put(courseId);
+            buffer.putShort((short)title.length).put(title);
+        }
+        
+        int size() {
+            return buffer.position();
+        }
+        
+        // @return The collected bytes, ready to be read
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buffer.array(), 0, buffer.position());
+        }
+        
+        private void ensure(int bytes) {
+            if (buffer.remaining() >= bytes)
+                return;
+            
+            var bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            bigger.put(buffer.array(), 0, buffer.position());
+            buffer = bigger;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.mycompany.semesterproject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+    Finds the csrf token and the student's user ID in the home page while it downloads. The page sets them with calls like
+    ('XSRF.Token','...') and ('Session.UserId','...'), and they are near the top, so the scan stops as soon as it has both and the rest
+    of the page is never downloaded. It matches the bytes directly, because the markers and their values are plain ASCII.
+*/
+public class HomepageScanner {
+    private static final byte[] XSRF_MARKER = "'XSRF.Token'".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] USER_ID_MARKER = "'Session.UserId'".getBytes(StandardCharsets.US_ASCII);
+    
+    // Tracks how much of one marker has been matched, then reads the quoted value that follows it
+    private static class Field {
+        final byte[] marker;
+        int matched; // The number of marker bytes matched so far
+        boolean inValue; // True after the opening quote of the value has been read
+        final ByteArrayOutputStream value = new ByteArrayOutputStream();
+        String result; // The value once its closing quote has been read
+        
+        Field(byte[] marker) {
+            this.marker = marker;
+        }
+        
+        void accept(int b) {
+            if (result != null)
+                return;
+            
+            // Like the old regex, the value has to be on the same line as its marker
+            if (matched == marker.length) {
+                if (b == '\n') {
+                    reset();
+                }
+                else if (!inValue) {
+                    inValue = b == '\'';
+                }
+                else if (b == '\'') {
+                    result = value.toString(StandardCharsets.UTF_8);
+                }
+                else {
+                    value.write(b);
+                }
+                
+                return;
+            }
+            
+            if (b == marker[matched]) {
+                matched++;
+            }
+            else {
+                // Quotes only appear at the ends of the markers, so a quote can only be the start of a new match
+                matched = b == marker[0] ? 1 : 0;
+            }
+        }
+        
+        void reset() {
+            matched = 0;
+            inValue = false;
+            value.reset();
+        }
+    }
+    
+    /*
+        @stream The body of the home page. It is not closed here.
+        @return The csrf token and the user ID, in that order, or null if the page ended before both were found. They may appear in either order.
+    */
+    public static String[] scan(InputStream stream) throws IOException {
+        var xsrf = new Field(XSRF_MARKER);
+        var userId = new Field(USER_ID_MARKER);
+        byte[] buffer = new byte[8192];
+        int count;
+        
+        while ((count = stream.read(buffer)) != -1) {
+            for (int i = 0; i < count; i++) {
+                xsrf.accept(buffer[i]);
+                userId.accept(buffer[i]);
+                
+                // Stop reading as soon as both values are known. The caller closes the stream, which cancels the rest of the download
+                if (xsrf.result != null && userId.result != null)
+                    return new String[] { xsrf.result, userId.result };
+            }
+        }
+        
+        return null;
+    }
+}
@@ -0,0 +1,267 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+    Keeps the requests to one host under the rate the host allows.
+    A token bucket limits how many requests start per second, and the number of requests in flight is adjusted with AIMD:
+    it grows by one after a full window of successful responses and is halved when the host answers 429 Too Many Requests or 503 Service Unavailable.
+    Throttled requests are retried after the Retry-After delay the host asks for, and no request to the host starts until that delay has passed.
+    A host asking for a longer delay than the maximum backoff only pauses the host for the maximum, and the request that was told to wait fails instead of being retried.
+*/
+public class HostThrottle {
+    private final String host; // The host this throttle is for
+    private final RequestLimiter limiter; // Limits the requests in flight to the current AIMD limit
+    private final int maxLimit; // The highest the AIMD limit can grow to
+    private final double ratePerSecond, burst; // How many tokens are added per second, and the most tokens the bucket can hold
+    private final int maxRetries; // How many times a throttled request is retried before its 429/503 response is returned
+    private final long maxBackoffMillis; // The longest the host is paused for, and the longest Retry-After a request waits for before failing
+    
+    private double tokens; // Tokens available in the bucket. It goes negative when requests are waiting for tokens
+    private long lastRefill; // The time in nanoseconds the bucket was last refilled
+    private long pausedUntil; // The time in milliseconds until which no request may start because of a Retry-After
+    private long lastDecrease; // The time in milliseconds the limit was last halved
+    private int successes; // Successful responses since the limit last changed
+    
+    private final AtomicLong throttled, retries; // Counters for 429/503 responses and for requests that were sent again
+    
+    /*
+        @host The host this throttle is for
+        @maxLimit The highest number of requests that can be in flight at once
+        @ratePerSecond How many requests can start per second on average
+        @burst How many requests can start at once after the host has been idle
+        @maxRetries How many times a throttled request is retried
+        @maxBackoffMillis The longest delay a throttled request waits for before it is retried
+    */
+    public HostThrottle(String host, int maxLimit, double ratePerSecond, double burst, int maxRetries, long maxBackoffMillis) {
+        this.host = host;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limiter = new RequestLimiter(this.maxLimit);
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxRetries = maxRetries;
+        this.maxBackoffMillis = Math.max(0, maxBackoffMillis);
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+        this.throttled = new AtomicLong();
+        this.retries = new AtomicLong();
+    }
+    
+    /*
+        @send Sends the request. It may be called again if the host throttles the request
+        @return A future that completes with the first response that wasn't throttled, or with the last throttled response once the retries run out.
+        It completes exceptionally if the host asks for a longer Retry-After than the maximum backoff
+    */
+    public <T> CompletableFuture<HttpResponse<T>> submit(Supplier<CompletableFuture<HttpResponse<T>>> send) {
+        return attempt(send, 0, maxRetries);
+    }
+    
+    /*
+        For requests that aren't safe to send twice, such as a POST. A throttled response still pauses the host and halves the limit,
+        but it is returned to the caller instead of being retried.
+        
+        @send Sends the request. It is called once
+        @return A future that completes with the response, throttled or not
+    */
+    public <T> CompletableFuture<HttpResponse<T>> submitOnce(Supplier<CompletableFuture<HttpResponse<T>>> send) {
+        return attempt(send, 0, 0);
+    }
+    
+    /*
+        @attempt The number of times the request was already retried
+        @retryLimit How many times the request may be retried
+    */
+    private <T> CompletableFuture<HttpResponse<T>> attempt(Supplier<CompletableFuture<HttpResponse<T>>> send, int attempt, int retryLimit) {
+        return limiter.submit(() -> {
+            long delay = reserveToken();
+            
+            if (delay <= 0)
+                return send.get();
+            
+            // Wait for the token without blocking a thread
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)).thenCompose(ignored -> send.get());
+        }).thenCompose(response -> {
+            int status = response.statusCode();
+            
+            if (status != 429 && status != 503) {
+                onSuccess();
+                return CompletableFuture.completedFuture(response);
+            }
+            
+            long retryAfter = onThrottled(response, attempt);
+            
+            if (retryLimit == 0)
+                return CompletableFuture.completedFuture(response); // Nothing waits for the Retry-After, so it doesn't matter how long it is
+            
+            if (retryAfter > maxBackoffMillis) {
+                discard(response);
+                return CompletableFuture.failedFuture(new IOException(String.format("%s asked to retry after %dms, more than the maximum backoff of %dms", host, retryAfter, maxBackoffMillis)));
+            }
+            
+            if (attempt >= retryLimit)
+                return CompletableFuture.completedFuture(response);
+            
+            discard(response);
+            retries.incrementAndGet();
+            
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(retryAfter, TimeUnit.MILLISECONDS))
+                .thenCompose(ignored -> attempt(send, attempt + 1, retryLimit));
+        });
+    }
+    
+    // @return How many milliseconds the caller must wait before sending, after taking a token from the bucket
+    private synchronized long reserveToken() {
+        long now = System.nanoTime();
+        
+        if (ratePerSecond > 0) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * ratePerSecond);
+            lastRefill = now;
+        }
+        else
+            tokens = burst; // A rate of 0 turns the token bucket off
+        
+        tokens--;
+        
+        // When the bucket is empty the token is borrowed, and the caller waits until it would have been refilled
+        long tokenDelay = tokens >= 0 ? 0 : (long)Math.ceil(-tokens / ratePerSecond * 1000);
+        return Math.max(tokenDelay, pausedUntil - System.currentTimeMillis());
+    }
+    
+    // Grows the limit by one after a full window of successful responses
+    private void onSuccess() {
+        int newLimit;
+        
+        synchronized (this) {
+            if (++successes < limiter.getLimit() || limiter.getLimit() >= maxLimit)
+                return;
+            
+            successes = 0;
+            newLimit = limiter.getLimit() + 1;
+        }
+        
+        limiter.setLimit(newLimit);
+    }
+    
+    /*
+        Halves the limit and pauses the host for the Retry-After delay, but never for longer than the maximum backoff.
+        
+        @response The 429 or 503 response
+        @attempt The number of times the request was already retried
+        @return How many milliseconds to wait before retrying, which is more than the maximum backoff if the host asked for more
+    */
+    private long onThrottled(HttpResponse<?> response, int attempt) {
+        throttled.incrementAndGet();
+        
+        long now = System.currentTimeMillis();
+        long delay = getRetryAfter(response, now);
+        
+        // Without a Retry-After header, back off exponentially with some jitter so the retries don't all arrive together
+        if (delay < 0)
+            delay = Math.min(maxBackoffMillis, (500L << Math.min(attempt, 6)) + ThreadLocalRandom.current().nextLong(250));
+        
+        int newLimit = -1;
+        
+        synchronized (this) {
+            // A host asking for hours would otherwise stall every request to it, including ones that would be answered
+            pausedUntil = Math.max(pausedUntil, now + Math.min(delay, maxBackoffMillis));
+            successes = 0;
+            
+            // Many requests in flight are usually throttled together, so only halve the limit once per second
+            if (now - lastDecrease >= 1000) {
+                lastDecrease = now;
+                newLimit = Math.max(1, limiter.getLimit() / 2);
+            }
+        }
+        
+        if (newLimit > 0)
+            limiter.setLimit(newLimit);
+        
+        return delay;
+    }
+    
+    /*
+        @response The throttled response
+        @now The current time in milliseconds
+        @return The delay in milliseconds from the Retry-After header, or -1 if there isn't a valid one
+    */
+    private static long getRetryAfter(HttpResponse<?> response, long now) {
+        var header = response.headers().firstValue("Retry-After");
+        
+        if (header.isEmpty())
+            return -1;
+        
+        String value = header.get().trim();
+        
+        // Retry-After is either a number of seconds or an HTTP date
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ex) {
+            try {
+                return Math.max(0, ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - now);
+            } catch (DateTimeParseException ex2) {
+                return -1;
+            }
+        }
+    }
+    
+    // Closes the body of a response that won't be used, so its connection can be reused
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof InputStream stream) {
+            try {
+                stream.close();
+            } catch (IOException ex) {
+                // The connection is dropped instead
+            }
+        }
+    }
+    
+    // @return The host this throttle is for
+    public String getHost() {
+        return host;
+    }
+    
+    // @return The current number of requests that can be in flight at once
+    public int getLimit() {
+        return limiter.getLimit();
+    }
+    
+    // @return The number of requests in flight
+    public int getActive() {
+        return limiter.getActive();
+    }
+    
+    // @return The number of requests waiting for a free slot
+    public int getWaiting() {
+        return limiter.getWaiting();
+    }
+    
+    // @return The number of 429 and 503 responses from the host
+    public long getThrottled() {
+        return throttled.get();
+    }
+    
+    // @return The number of requests that were sent again after being throttled
+    public long getRetries() {
+        return retries.get();
+    }
+    
+    // @return The average number of requests per second allowed to start
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+    
+    // @return A one line summary of the throttle's limits and counters
+    public String summary() {
+        return String.format("%s: limit %d/%d, %.1f req/s, %d in flight, %d waiting, %d throttled, %d retried", host, getLimit(), maxLimit, ratePerSecond, getActive(), getWaiting(), getThrottled(), getRetries());
+    }
+}
@@ -0,0 +1,218 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+    Stores GET response bodies so they can be revalidated with If-None-Match/If-Modified-Since instead of downloaded again.
+    Entries are kept in a small in-memory LRU and also written to disk so they survive restarts.
+    The disk store is trimmed when the cache is created and every TRIM_INTERVAL writes: entries that haven't been written or read
+    within maxAgeMillis are deleted, and then the least recently used entries until the store fits in maxDiskBytes.
+*/
+public class HttpCache {
+    private static final int TRIM_INTERVAL = 64; // The number of writes between two trims of the disk store
+    
+    private final Map<String, CacheEntry> memory; // Most recently used entries, keyed by HttpCache.key
+    private final Path directory; // The directory entries are written to, or null if the disk store is disabled
+    private final long maxDiskBytes, maxAgeMillis; // The most the disk store may hold, and how long an unused entry is kept
+    private final AtomicInteger writesSinceTrim = new AtomicInteger();
+    private final AtomicLong hits, misses, bytesSaved; // Counters for measuring how much traffic the cache removes
+    
+    /*
+        @maxEntries The maximum number of entries kept in memory
+        @directory The directory entries are written to, or null to only keep entries in memory
+        @maxDiskBytes The most bytes the entries on disk may take up
+        @maxAgeMillis How long an entry on disk is kept after it was last written or read
+    */
+    public HttpCache(int maxEntries, Path directory, long maxDiskBytes, long maxAgeMillis) {
+        // A LinkedHashMap in access order drops the least recently used entry once it grows past maxEntries
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.bytesSaved = new AtomicLong();
+        
+        trim();
+    }
+    
+    /*
+        @url The url of the request
+        @identity Who the request was sent for, such as the student's user ID, or the Cookie header. Responses are never shared between different identities.
+        @return The cache key for the request
+    */
+    public static String key(String url, String identity) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(url.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            
+            if (identity != null)
+                digest.update(identity.getBytes(StandardCharsets.UTF_8));
+            
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // Every JVM is required to support SHA-256
+        }
+    }
+    
+    /*
+        @key The cache key from HttpCache.key
+        @return The stored entry, or null if there isn't one
+    */
+    public CacheEntry get(String key) {
+        synchronized (memory) {
+            CacheEntry entry = memory.get(key);
+            
+            if (entry != null)
+                return entry;
+        }
+        
+        if (directory == null)
+            return null;
+        
+        // Not in memory, so try to read it from disk
+        try {
+            Path path = directory.resolve(key + ".json");
+            var json = new JSONObject(Files.readString(path));
+            var entry = new CacheEntry(json.optString("etag", null), json.optString("lastModified", null), json.getString("body"));
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis())); // The modified time is when the entry was last used, for trim()
+            
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+            
+            return entry;
+        } catch (IOException | JSONException ex) {
+            return null;
+        }
+    }
+    
+    /*
+        @key The cache key from HttpCache.key
+        @entry The entry to store in memory and on disk
+    */
+    public void put(String key, CacheEntry entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        
+        if (directory == null)
+            return;
+        
+        var json = new JSONObject();
+        json.put("etag", entry.etag);
+        json.put("lastModified", entry.lastModified);
+        json.put("body", entry.body);
+        
+        // Write to a temporary file first so a reader never sees a half written entry
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.writeString(temp, json.toString());
+            Files.move(temp, directory.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            System.out.println("Warning! Failed to write to the response cache");
+        }
+        
+        if (writesSinceTrim.incrementAndGet() >= TRIM_INTERVAL) {
+            writesSinceTrim.set(0);
+            trim();
+        }
+    }
+    
+    // Deletes the entries on disk that are too old, and then the least recently used ones until the rest fit in maxDiskBytes
+    private synchronized void trim() {
+        if (directory == null || !Files.isDirectory(directory))
+            return;
+        
+        record StoredFile(Path path, long size, long modified) {}
+        
+        var files = new ArrayList<StoredFile>();
+        long total = 0;
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>)paths::iterator) {
+                var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                
+                if (!attributes.isRegularFile())
+                    continue;
+                
+                // Left over temporary files are only ever deleted by age, since another write may still be using a new one
+                if (attributes.lastModifiedTime().toMillis() < oldest) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                
+                if (path.getFileName().toString().endsWith(".json")) {
+                    files.add(new StoredFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    total += attributes.size();
+                }
+            }
+            
+            files.sort(Comparator.comparingLong(StoredFile::modified));
+            
+            for (int i = 0; i < files.size() && total > maxDiskBytes; i++) {
+                Files.deleteIfExists(files.get(i).path());
+                total -= files.get(i).size();
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            // Trimming is retried after the next writes
+        }
+    }
+    
+    // @bodyBytes The size in bytes of the stored body that did not need to be downloaded again
+    public void recordHit(long bodyBytes) {
+        hits.incrementAndGet();
+        bytesSaved.addAndGet(bodyBytes);
+    }
+    
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+    
+    // @return The number of responses served from the cache after a 304
+    public long getHits() {
+        return hits.get();
+    }
+    
+    // @return The number of cacheable requests that had to download the full body
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    // @return The number of body bytes that did not need to be downloaded because of a 304
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+    
+    // @return A one line summary of the cache counters
+    public String summary() {
+        return String.format("Response cache: %d hits, %d misses, %d bytes saved", getHits(), getMisses(), getBytesSaved());
+    }
+}
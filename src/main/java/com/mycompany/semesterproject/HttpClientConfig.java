@@ -0,0 +1,206 @@
+package com.mycompany.semesterproject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/*
+    Builds the HttpClients Networking uses, from these settings:
+        elearn.http.version           HTTP_2 (default) or HTTP_1_1. HTTP/2 sends every request to a host over one connection
+        elearn.http.executor          default, virtual, or fixed:<threads>. The threads that run the client's asynchronous work
+        elearn.http.compression       true (default) to ask for gzip/deflate bodies and decode them transparently
+        elearn.http.keepAliveSeconds  How long idle connections are kept open for reuse (default 120)
+        elearn.http.poolSize          The most idle connections kept per client, or 0 for no limit (default 0)
+*/
+public class HttpClientConfig {
+    public static final boolean compression = Settings.getBoolean("elearn.http.compression", true); // Whether requests ask for compressed bodies
+    private static final HttpClient.Version version = getVersion();
+    private static final Executor executor = getExecutor(); // The executor shared by every client, or null for the JDK's default
+    
+    static {
+        // The JDK reads its connection pool settings once, when the first client is created, so they must be set before that
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(Settings.getLong("elearn.http.keepAliveSeconds", 120)));
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(Settings.getInt("elearn.http.poolSize", 0)));
+    }
+    
+    /*
+        @connectTimeout How long the client waits for a connection
+        @return A new client with the configured version and executor
+    */
+    public static HttpClient build(Duration connectTimeout) {
+        var builder = HttpClient.newBuilder()
+            .connectTimeout(connectTimeout)
+            .version(version);
+        
+        if (executor != null)
+            builder.executor(executor);
+        
+        return builder.build();
+    }
+    
+    /*
+        Reads the body as a string, decompressing it first if the server sent it with gzip or deflate Content-Encoding.
+        A 304 or a HEAD response can carry the Content-Encoding of the body it stands for without having one, so empty bodies are never decoded.
+        
+        @return A body handler for string responses
+    */
+    public static HttpResponse.BodyHandler<String> decodedString() {
+        return info -> {
+            Charset charset = getCharset(info.headers());
+            String encoding = info.headers().firstValue("Content-Encoding").orElse("identity");
+            
+            if (encoding.equalsIgnoreCase("identity") || !hasBody(info.statusCode(), info.headers()))
+                return HttpResponse.BodySubscribers.ofString(charset);
+            
+            // The whole compressed body is in memory once this runs, so decoding it never waits on the network
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+                if (bytes.length == 0)
+                    return ""; // A HEAD response, which has no body whatever its status
+                
+                try (InputStream decoded = decode(new ByteArrayInputStream(bytes), encoding)) {
+                    return new String(decoded.readAllBytes(), charset);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        };
+    }
+    
+    /*
+        This is called by whoever reads the stream instead of inside the body handler, because GZIPInputStream reads the gzip header
+        as soon as it is created, and body handlers must not wait on the network.
+        
+        @response A response whose body is a stream
+        @return The body, decompressed if the server sent it with gzip or deflate Content-Encoding
+    */
+    public static InputStream decodedStream(HttpResponse<InputStream> response) throws IOException {
+        return decodedStream(response, response.body());
+    }
+    
+    /*
+        @response A response whose body is a stream
+        @body The response's body stream, or a stream wrapping it
+        @return The body, decompressed if the server sent it with gzip or deflate Content-Encoding
+    */
+    public static InputStream decodedStream(HttpResponse<InputStream> response, InputStream body) throws IOException {
+        if (!hasBody(response.statusCode(), response.headers()))
+            return body;
+        
+        return decode(body, response.headers().firstValue("Content-Encoding").orElse("identity"));
+    }
+    
+    /*
+        @status The response status code
+        @headers The response headers
+        @return False if the response can't have a body: a 1xx, 204 or 304 status, or a Content-Length of 0
+    */
+    private static boolean hasBody(int status, HttpHeaders headers) {
+        if (status < 200 || status == 204 || status == 304)
+            return false;
+        
+        return headers.firstValueAsLong("Content-Length").orElse(-1) != 0;
+    }
+    
+    /*
+        @stream The body as it was sent
+        @encoding The Content-Encoding of the body
+        @return The decompressed body
+    */
+    private static InputStream decode(InputStream stream, String encoding) throws IOException {
+        switch (encoding.trim().toLowerCase()) {
+            case "gzip", "x-gzip" -> {
+                return new GZIPInputStream(stream, 8192);
+            }
+            case "deflate" -> {
+                // "deflate" is meant to have a zlib header, but some servers send raw deflate data, so check the first byte
+                var buffered = new BufferedInputStream(stream);
+                buffered.mark(2);
+                int first = buffered.read();
+                buffered.reset();
+                
+                boolean zlib = first >= 0 && (first & 0x0F) == 8;
+                return new InflaterInputStream(buffered, new Inflater(!zlib), 8192);
+            }
+            case "identity", "" -> {
+                return stream;
+            }
+            default -> throw new ZipException("Unsupported Content-Encoding " + encoding);
+        }
+    }
+    
+    // @return The charset from the Content-Type header, or UTF-8 if it has none
+    private static Charset getCharset(HttpHeaders headers) {
+        String type = headers.firstValue("Content-Type").orElse("");
+        int index = type.toLowerCase().indexOf("charset=");
+        
+        if (index < 0)
+            return StandardCharsets.UTF_8;
+        
+        String name = type.substring(index + 8).split(";")[0].trim().replace("\"", "");
+        
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+    
+    // @return The HTTP version from elearn.http.version
+    private static HttpClient.Version getVersion() {
+        String value = Settings.getString("elearn.http.version", "HTTP_2");
+        
+        try {
+            return HttpClient.Version.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            System.out.printf("Warning! Ignoring invalid value \"%s\" for elearn.http.version%n", value);
+            return HttpClient.Version.HTTP_2;
+        }
+    }
+    
+    // @return The executor from elearn.http.executor, or null for the JDK's default
+    private static Executor getExecutor() {
+        String value = Settings.getString("elearn.http.executor", "default");
+        
+        if (value.equals("virtual"))
+            return AccountEngine.newThreadPerTaskExecutor();
+        
+        if (value.startsWith("fixed:")) {
+            try {
+                return Executors.newFixedThreadPool(Integer.parseInt(value.substring(6)), runnable -> {
+                    Thread thread = new Thread(runnable, "http-client");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            } catch (IllegalArgumentException ex) {
+                // Falls through to the warning below
+            }
+        }
+        
+        if (!value.equals("default"))
+            System.out.printf("Warning! Ignoring invalid value \"%s\" for elearn.http.executor%n", value);
+        
+        return null;
+    }
+    
+    // Sets a system property unless it was already given on the command line
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null)
+            System.setProperty(key, value);
+    }
+}
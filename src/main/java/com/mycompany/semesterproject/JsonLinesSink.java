@@ -0,0 +1,31 @@
+package com.mycompany.semesterproject;
+
+import java.io.PrintStream;
+import org.json.JSONObject;
+
+// Writes one JSON object per line for each account, in the order the accounts finish
+class JsonLinesSink implements ResultSink {
+    private final PrintStream out;
+    
+    public JsonLinesSink(PrintStream out) {
+        this.out = out;
+    }
+    
+    @Override
+    public void write(String account, Batch.Result result) {
+        var json = new JSONObject();
+        json.put("account", account);
+        json.put("status", result.status);
+        
+        if (result.hasResults())
+            json.put("result", result.toJSON());
+        
+        String line = json.toString();
+        
+        // Lines from different accounts must not be mixed together
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mycompany.semesterproject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    A latency histogram that records without locking. Latencies are counted in buckets that grow exponentially, with 8 buckets
+    between each power of two, so a percentile is accurate to about 10% at any scale from 1ms to over an hour.
+*/
+class LatencyHistogram {
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = 23 * SUB_BUCKETS; // Up to 2^25 milliseconds, which is about 9 hours
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    
+    // @millis The latency of a request
+    public void record(long millis) {
+        counts.incrementAndGet(bucketOf(Math.max(0, millis)));
+        total.increment();
+        sum.add(millis);
+    }
+    
+    // @return The number of latencies recorded
+    public long count() {
+        return total.sum();
+    }
+    
+    // @return The mean latency in milliseconds, or 0 if nothing was recorded
+    public double mean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double)sum.sum() / count;
+    }
+    
+    /*
+        @percentile The percentile to read, from 0 to 100
+        @return The upper bound in milliseconds of the bucket holding the percentile, or 0 if nothing was recorded
+    */
+    public long percentile(double percentile) {
+        long count = total.sum();
+        
+        if (count == 0)
+            return 0;
+        
+        long rank = (long)Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            
+            if (seen >= rank)
+                return upperBoundOf(i);
+        }
+        
+        return upperBoundOf(BUCKETS - 1);
+    }
+    
+    // Latencies below SUB_BUCKETS milliseconds get a bucket each. Above that, each power of two is split into SUB_BUCKETS buckets
+    private static int bucketOf(long millis) {
+        if (millis < SUB_BUCKETS)
+            return (int)millis;
+        
+        int power = 63 - Long.numberOfLeadingZeros(millis); // At least 3, since millis >= 8
+        int sub = (int)((millis >>> (power - 3)) & (SUB_BUCKETS - 1));
+        
+        return Math.min(BUCKETS - 1, (power - 2) * SUB_BUCKETS + sub);
+    }
+    
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        
+        int power = bucket / SUB_BUCKETS + 2;
+        int sub = bucket % SUB_BUCKETS;
+        
+        return ((long)(SUB_BUCKETS + sub + 1) << (power - 3)) - 1;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mycompany.semesterproject;
+
+import java.util.Arrays;
+
+// Keeps the most recent response times so a percentile can be read without storing every request
+class LatencyWindow {
+    private final long[] samples; // The most recent latencies in milliseconds, used as a ring buffer
+    private int next, count; // The position of the next sample to overwrite, and the number of samples stored
+    private long cachedPercentile = -1; // The last computed percentile, reused until enough new samples arrive
+    private int samplesSinceCached; // Samples added since cachedPercentile was computed
+    
+    public LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+    
+    // @millis The latency of a request
+    public synchronized void add(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        samplesSinceCached++;
+    }
+    
+    /*
+        @percentile The percentile to read, from 0 to 100
+        @minSamples The fewest samples needed for the percentile to mean anything
+        @return The latency at the percentile in milliseconds, or -1 if there are fewer than minSamples samples
+    */
+    public synchronized long percentile(double percentile, int minSamples) {
+        if (count < minSamples)
+            return -1;
+        
+        // Sorting the window is cheap, but there is no need to do it for every request
+        if (cachedPercentile < 0 || samplesSinceCached >= 16) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cachedPercentile = sorted[(int)Math.min(count - 1, Math.ceil(percentile / 100 * count) - 1)];
+            samplesSinceCached = 0;
+        }
+        
+        return cachedPercentile;
+    }
+}
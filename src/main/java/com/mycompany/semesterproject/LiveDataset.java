@@ -0,0 +1,117 @@
+package com.mycompany.semesterproject;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+    One kind of data shown by a menu. The first time it is needed in a launch, the copy saved in the offline snapshot is returned right away
+    and the live data downloads in the background. Later calls reuse the downloaded data until it is older than Dataset.getMaxAgeMillis().
+*/
+public class LiveDataset {
+    // Downloads the data for the given courses. The student is already authorized when it is called
+    public interface Fetcher {
+        Schedule fetch(eLearn elearn, List<Course> courses);
+    }
+    
+    private final eLearn elearn;
+    private final Snapshot.Kind kind;
+    private final String name; // What the data is called in warnings, such as "deadlines"
+    private final Fetcher fetcher;
+    private volatile Dataset current; // The data that was last returned, or null if nothing has been loaded yet
+    private CompletableFuture<Dataset> revalidating; // The background download started when the snapshot was returned, or null
+    
+    public LiveDataset(eLearn elearn, Snapshot.Kind kind, String name, Fetcher fetcher) {
+        this.elearn = elearn;
+        this.kind = kind;
+        this.name = name;
+        this.fetcher = fetcher;
+    }
+    
+    /*
+        When this returns data from the snapshot, its fromSnapshot is true and awaitRevalidation returns the live data that replaces it.
+        
+        @refresh If true, the data is downloaded again even if the data downloaded earlier is still fresh
+        @return The data to show for the selected courses, or null if nothing could be loaded
+    */
+    public Dataset get(boolean refresh) {
+        var courses = elearn.courses;
+        Dataset loaded = current;
+        Profiling.Action action = Profiling.currentAction();
+        
+        if (action != null)
+            action.setCourses(courses.size());
+        
+        // Reuse the data from earlier in the session if it isn't older than the max age
+        if (!refresh && loaded != null && !loaded.fromSnapshot && loaded.isFresh(Dataset.getMaxAgeMillis(), courses))
+            return loaded;
+        
+        // On the first use, show the saved copy now and download the live data while the student reads it
+        if (!refresh && loaded == null) {
+            Dataset saved = elearn.getSnapshot().get(kind, courses);
+            
+            if (saved != null) {
+                current = saved;
+                revalidating = CompletableFuture.supplyAsync(Profiling.wrap(() -> download(courses))); // The download's events belong to this action too
+                return saved;
+            }
+        }
+        
+        Dataset live = download(courses);
+        
+        // If eLearn can't be reached, then fall back to the last data we have for the same courses, unless the student asked for a refresh
+        if (live == null && !refresh && loaded != null && loaded.isFor(courses)) {
+            System.out.printf("Warning! Could not reach eLearn, so these %s are from %s%n", name, Schedule.epochToTimestamp(loaded.fetchedAt));
+            return loaded;
+        }
+        
+        return live;
+    }
+    
+    /*
+        Waits for the download started when get returned the snapshot.
+        
+        @return The live data that replaces the snapshot, or null if nothing was downloading or the download failed
+    */
+    public Dataset awaitRevalidation() {
+        if (revalidating == null)
+            return null;
+        
+        Dataset live = revalidating.join();
+        revalidating = null;
+        
+        if (live == null)
+            System.out.printf("Warning! Could not reach eLearn, so these %s are from %s%n", name, Schedule.epochToTimestamp(current.fetchedAt));
+        
+        return live;
+    }
+    
+    /*
+        @courses The courses to download the data for
+        @return The downloaded data, or null if the student couldn't be authorized or no course could be downloaded
+    */
+    private Dataset download(List<Course> courses) {
+        // Make sure the student is authorized on the API before proceeding
+        if (!elearn.Authorize()) {
+            System.out.println("Error: Failed to get authorization token");
+            return null;
+        }
+        
+        Schedule schedule = fetcher.fetch(elearn, courses);
+        
+        if (schedule.failedCourses > 0)
+            System.out.printf("Warning! Failed to load the %s for %d course(s)%n", name, schedule.failedCourses);
+        
+        // When every course failed, eLearn is most likely down, so the data we already have is better than an empty list
+        if (!courses.isEmpty() && schedule.failedCourses == courses.size())
+            return null;
+        
+        var dataset = new Dataset(schedule, courses);
+        
+        // Only complete downloads are saved, so the snapshot never loses a course's data to a failed request
+        if (schedule.failedCourses == 0)
+            elearn.getSnapshot().put(kind, dataset);
+        
+        current = dataset;
+        return dataset;
+    }
+}
@@ -0,0 +1,88 @@
+package com.mycompany.semesterproject;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+    Latency, status, byte and error counters for each API endpoint template, so it is clear which Brightspace calls take the most time.
+    Networking records every request here. The counters are published over JMX and printed at exit with --stats.
+*/
+public class Metrics {
+    // The templates, in the order they are reported
+    private static final String[] TEMPLATES = { "sequences", "grades/values", "calendar/events", "enrollments", "organizations", "oauth2/token", "other" };
+    private static final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    
+    static {
+        for (String template : TEMPLATES)
+            stats.put(template, new EndpointStats(template));
+        
+        // Starting the platform MBean server takes a moment, so it can be turned off with elearn.metrics.jmx=false
+        if (Settings.getBoolean("elearn.metrics.jmx", true)) {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            
+            for (String template : TEMPLATES) {
+                try {
+                    server.registerMBean(stats.get(template), new ObjectName("com.mycompany.semesterproject:type=Endpoint,name=" + ObjectName.quote(template)));
+                } catch (JMException ex) {
+                    // JMX is only for watching the program, so the counters still work without it
+                }
+            }
+        }
+    }
+    
+    /*
+        @uri The url of a request
+        @return The statistics of the url's endpoint template
+    */
+    public static EndpointStats of(URI uri) {
+        return stats.get(templateOf(uri));
+    }
+    
+    // @return The endpoint template of the url
+    static String templateOf(URI uri) {
+        String service = Urls.serviceOf(uri);
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        
+        // The API services are told apart by their base url, since a stand-in server may serve them all from one host
+        if (service != null)
+            return service;
+        
+        if (path.contains("/grades/values/"))
+            return "grades/values";
+        
+        if (path.contains("/calendar/events"))
+            return "calendar/events";
+        
+        if (path.endsWith("/oauth2/token"))
+            return "oauth2/token";
+        
+        return "other";
+    }
+    
+    /*
+        @return Every template's counters, followed by the response cache, host throttle and hedging summaries
+    */
+    public static String report() {
+        var report = new StringBuilder("Network statistics:").append(System.lineSeparator());
+        
+        for (String template : TEMPLATES)
+            report.append("  ").append(stats.get(template).summary()).append(System.lineSeparator());
+        
+        if (Networking.getCache() != null)
+            report.append("  Cache: ").append(Networking.getCache().summary()).append(System.lineSeparator());
+        
+        for (HostThrottle throttle : Networking.getHostThrottles())
+            report.append("  Throttle ").append(throttle.summary()).append(System.lineSeparator());
+        
+        for (Endpoint endpoint : Endpoint.values()) {
+            if (endpoint.getRequests() > 0)
+                report.append("  Hedging ").append(endpoint.summary()).append(System.lineSeparator());
+        }
+        
+        return report.toString();
+    }
+}
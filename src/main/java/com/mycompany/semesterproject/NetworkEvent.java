@@ -0,0 +1,26 @@
+package com.mycompany.semesterproject;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.mycompany.semesterproject.Network")
+@Label("Network")
+@Description("One request, from being queued by the limiters until its response has been received")
+@Category({"eLearn", "Phase"})
+@StackTrace(false)
+class NetworkEvent extends PhaseEvent {
+    @Label("Endpoint")
+    String endpoint;
+    
+    @Label("Status")
+    @Description("The response status code, or 0 if the request failed")
+    int status;
+    
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
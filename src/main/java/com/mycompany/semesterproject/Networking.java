@@ -1,17 +1,55 @@
 package com.mycompany.semesterproject;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 public class Networking {
-    private static final HttpClient client = HttpClient.newHttpClient(); // Our HttpClient object used for making network requests
+    private static final ConcurrentHashMap<Duration, HttpClient> clients = new ConcurrentHashMap<>(); // Our HttpClient objects used for making network requests, one for each connect timeout
+    private static final boolean hedging = Settings.getBoolean("elearn.hedge.enabled", false); // Whether slow GET requests are sent a second time
+    private static final HttpCache cache = createCache(); // Stores GET responses so they can be revalidated instead of downloaded again, or null if disabled
+    private static final RequestLimiter limiter = new RequestLimiter(Settings.getInt("elearn.maxConcurrentRequests", 64)); // Limits how many requests can be in flight at once across every host
+    private static final ConcurrentHashMap<String, HostThrottle> hostThrottles = new ConcurrentHashMap<>(); // Limits the rate and number of requests in flight to each host, and backs off when the host throttles us
+    private static final ConcurrentHashMap<String, String> cacheIdentities = new ConcurrentHashMap<>(); // The stable identity the cache stores responses under for each current Authorization header
+    
+    // Thread pool for parsing JSON response bodies. It is sized to the number of CPUs because parsing does not wait on the network
+    private static final ExecutorService parsePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "json-parser");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // @return The response cache configured by the elearn.cache.* settings, or null if it is disabled
+    private static HttpCache createCache() {
+        if (!Settings.getBoolean("elearn.cache.enabled", true))
+            return null;
+        
+        String directory = Settings.getString("elearn.cache.dir", ".elearn-cache");
+        return new HttpCache(Settings.getInt("elearn.cache.maxEntries", 256), directory.isEmpty() ? null : Path.of(directory),
+            Settings.getLong("elearn.cache.maxDiskBytes", 64L * 1024 * 1024), Settings.getLong("elearn.cache.maxAgeDays", 30) * 24 * 60 * 60 * 1000);
+    }
     
     /*
         @url The url to make the network request to
@@ -19,26 +57,412 @@ public class Networking {
         @return The HttpResponse object for the network request.
     */
     public static HttpResponse<String> Get(String url, String... headers) {
-        HttpResponse<String> response;
+        return GetAsync(url, headers).join();
+    }
+    
+    /*
+        @url The url to make the network request to
+        @headers The request headers to send in the network request. Each header key pair is seperated by commas, Example: Networking.GetAsync("https://google.com/", "User-Agent", "My Useragent")
+        @return A future that completes with the HttpResponse object for the network request, or with null if the request failed.
+    */
+    public static CompletableFuture<HttpResponse<String>> GetAsync(String url, String... headers) {
+        HttpRequest.Builder request;
+        String cacheKey = null;
+        CacheEntry cached = null;
         
-        try {        
-            var request = HttpRequest.newBuilder()
-            .uri(new URI(url))
+        Endpoint endpoint;
+        EndpointStats stats;
+        NetworkEvent event;
+        
+        try {
+            var uri = new URI(url);
+            endpoint = Endpoint.of(uri);
+            stats = Metrics.of(uri);
+            event = Profiling.beginNetwork(uri);
+            
+            request = HttpRequest.newBuilder()
+            .uri(uri)
+            .timeout(endpoint.getRequestTimeout())
             .GET();
 
             if (headers.length > 0)
                 request.headers(headers);
             
-            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (HttpClientConfig.compression)
+                request.setHeader("Accept-Encoding", "gzip, deflate");
+            
+            // If we have a stored body for this url and credential, ask the server to only send the body if it changed
+            if (cache != null) {
+                cacheKey = HttpCache.key(url, getIdentity(headers));
+                cached = cache.get(cacheKey);
+                
+                if (cached != null && cached.etag != null)
+                    request.header("If-None-Match", cached.etag);
+                
+                if (cached != null && cached.lastModified != null)
+                    request.header("If-Modified-Since", cached.lastModified);
+            }
         } 
-        catch (URISyntaxException | IOException | InterruptedException ex){
+        catch (URISyntaxException | IllegalArgumentException ex) {
             System.out.println("Error! Failed to connect to " + url);
-            return null;
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        final String key = cacheKey;
+        final CacheEntry entry = cached;
+        long start = System.nanoTime();
+        
+        // The request waits in the limiters' queues if too many requests are already in flight
+        // GET requests are safe to send twice, so a slow one may be hedged with a second request
+        return hedge(endpoint, request, () -> clientFor(endpoint).sendAsync(request.build(), HttpClientConfig.decodedString()))
+            .whenComplete((response, ex) -> {
+                // Recorded before revalidating, so a 304 is counted as a 304
+                record(stats, start, response, 0);
+                Profiling.endNetwork(event, response);
+            })
+            .thenApply(response -> key == null ? response : revalidate(key, entry, response))
+            .exceptionally(ex -> {
+                System.out.println("Error! Failed to connect to " + url);
+                return null;
+            });
+    }
+    
+    /*
+        Starts a request once its host's throttle and the global limit allow it.
+        The host is checked first, so a request waiting on a busy or throttled host never holds one of the global slots.
+        
+        @request The request that will be sent
+        @send Sends the request. It is called again if the host answers 429 or 503
+        @return A future that completes with the response
+    */
+    private static <T> CompletableFuture<HttpResponse<T>> submit(HttpRequest.Builder request, Supplier<CompletableFuture<HttpResponse<T>>> send) {
+        return throttleFor(request).submit(() -> limiter.submit(send));
+    }
+    
+    // @return The throttle of the request's host
+    private static HostThrottle throttleFor(HttpRequest.Builder request) {
+        String host = request.build().uri().getHost();
+        
+        return hostThrottles.computeIfAbsent(host == null ? "" : host, key -> new HostThrottle(key,
+            Settings.getInt("elearn.maxRequestsPerHost", 8),
+            Settings.getInt("elearn.ratePerSecond", 20),
+            Settings.getInt("elearn.rateBurst", 20),
+            Settings.getInt("elearn.maxRetries", 3),
+            Settings.getLong("elearn.maxBackoffSeconds", 60) * 1000
+        ));
+    }
+    
+    /*
+        One sending of a request. It keeps the HttpClient's own future, since cancelling that is what aborts the exchange and frees its
+        limiter slots. Cancelling any future derived from it only stops waiting for the response.
+    */
+    private static class Exchange<T> {
+        private volatile boolean cancelled;
+        private volatile CompletableFuture<HttpResponse<T>> sent; // The HttpClient's future for the last time the request was sent, or null if it hasn't been yet
+        private volatile long sentAt; // The System.nanoTime() when the request was last handed to the client
+        private final AtomicBoolean finished = new AtomicBoolean(); // Whether the request's latency has been taken
+        
+        /*
+            Called by the limiters once the request may start, and again if the host throttles it.
+            
+            @sendAsync Hands the request to the HttpClient
+            @return The HttpClient's future, or a cancelled future if the exchange was cancelled while it waited in the limiters
+        */
+        CompletableFuture<HttpResponse<T>> send(Supplier<CompletableFuture<HttpResponse<T>>> sendAsync) {
+            if (cancelled)
+                return CompletableFuture.failedFuture(new CancellationException());
+            
+            sentAt = System.nanoTime();
+            var future = sendAsync.get();
+            sent = future;
+            
+            // The exchange may have been cancelled while it was being sent
+            if (cancelled)
+                future.cancel(true);
+            
+            return future;
+        }
+        
+        // Aborts the request. Its limiter slots are freed when the HttpClient's future completes as cancelled
+        void cancel() {
+            cancelled = true;
+            var future = sent;
+            
+            if (future != null)
+                future.cancel(true);
+        }
+        
+        // @return True once the request has been handed to the HttpClient
+        boolean isSent() {
+            return sent != null;
+        }
+        
+        // @return The milliseconds since the request was sent, or -1 if this was already called
+        long finish() {
+            return finished.getAndSet(true) ? -1 : (System.nanoTime() - sentAt) / 1000000;
+        }
+    }
+    
+    /*
+        Sends a request, and if it hasn't answered within the endpoint's p95 latency of being sent, sends it again and uses whichever
+        response arrives first. The slower exchange is aborted. Hedging is off unless elearn.hedge.enabled is true.
+        
+        @endpoint The class of endpoint the request is for
+        @request The request that will be sent
+        @sendAsync Hands the request to the HttpClient
+        @return A future that completes with the first response, or exceptionally if every request that was sent failed
+    */
+    private static <T> CompletableFuture<HttpResponse<T>> hedge(Endpoint endpoint, HttpRequest.Builder request, Supplier<CompletableFuture<HttpResponse<T>>> sendAsync) {
+        long delay = hedging ? endpoint.getHedgeDelay() : -1;
+        var primary = new Exchange<T>();
+        
+        // Without enough recent requests there is no p95 to wait for, so the request is sent once
+        if (delay < 0) {
+            return submit(request, () -> primary.send(sendAsync)).whenComplete((response, ex) -> {
+                if (ex == null)
+                    endpoint.recordLatency(primary.finish());
+            });
+        }
+        
+        var result = new CompletableFuture<HttpResponse<T>>();
+        var inFlight = new AtomicInteger(1); // The number of requests that haven't answered yet
+        var hedge = new Exchange<T>(); // The hedged request, which is only sent if the original is slow
+        
+        // Sends the hedge if the original request still hasn't answered
+        Runnable sendHedge = () -> {
+            if (result.isDone())
+                return;
+            
+            inFlight.incrementAndGet();
+            endpoint.recordHedgeSent();
+            
+            submit(request, () -> hedge.send(sendAsync)).whenComplete((response, ex) -> {
+                if (ex == null && result.complete(response)) {
+                    endpoint.recordHedgeWon();
+                    
+                    // The original is aborted, so the time it had waited is all that is known of its latency. It is still recorded,
+                    // and since the hedge was only sent after the p95 delay, it keeps the slow end of the window filled
+                    long millis = primary.finish();
+                    
+                    if (millis >= 0) {
+                        endpoint.recordLatency(millis);
+                        endpoint.recordHedgedLatency(millis);
+                    }
+                    
+                    primary.cancel();
+                }
+                else if (ex != null && inFlight.decrementAndGet() == 0)
+                    result.completeExceptionally(ex);
+            });
+        };
+        
+        // The delay is counted from when the original is sent, so the time it waits in the limiters isn't mistaken for a slow server
+        submit(request, () -> {
+            boolean first = !primary.isSent();
+            var sent = primary.send(sendAsync);
+            
+            if (first)
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(sendHedge);
+            
+            return sent;
+        }).whenComplete((response, ex) -> {
+            if (ex == null) {
+                long millis = primary.finish();
+                
+                if (millis >= 0)
+                    endpoint.recordLatency(millis);
+                
+                if (result.complete(response) && hedge.isSent())
+                    endpoint.recordHedgedLatency(millis);
+                
+                hedge.cancel(); // Aborts the hedge, or stops it from being sent if it is still waiting in the limiters
+            }
+            else if (inFlight.decrementAndGet() == 0)
+                result.completeExceptionally(ex); // No other request is left that could still succeed
+        });
+        
+        return result;
+    }
+    
+    /*
+        @endpoint The class of endpoint the request is for
+        @return The client that uses the endpoint's connect timeout
+    */
+    private static HttpClient clientFor(Endpoint endpoint) {
+        return clients.computeIfAbsent(endpoint.getConnectTimeout(), HttpClientConfig::build);
+    }
+    
+    /*
+        Opens connections to the hosts the program talks to, so the TLS handshakes are done before the first real request needs them.
+        It doesn't wait for the connections, and any failure is ignored.
+        
+        @urls One url on each host to connect to
+    */
+    public static void warmUp(String... urls) {
+        for (String url : urls) {
+            try {
+                var uri = new URI(url);
+                var request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(Endpoint.of(uri).getRequestTimeout())
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+                
+                // The connection stays in the client's pool after the response, ready for the next request to the host
+                clientFor(Endpoint.of(uri)).sendAsync(request, HttpResponse.BodyHandlers.discarding());
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                // Warming up is only an optimization
+            }
+        }
+    }
+    
+    /*
+        @stats The statistics of the request's endpoint template
+        @start The System.nanoTime() when the request was started
+        @response The response, or null if the request failed
+        @sent The number of request body bytes
+    */
+    private static void record(EndpointStats stats, long start, HttpResponse<?> response, long sent) {
+        long millis = (System.nanoTime() - start) / 1000000;
+        
+        if (response == null) {
+            stats.recordError(millis, sent);
+            return;
+        }
+        
+        // Content-Length is the size on the wire, so it is preferred over the decoded body, which may have been compressed
+        long received = response.headers().firstValueAsLong("Content-Length").orElse(response.body() instanceof String body ? utf8Length(body) : 0);
+        stats.recordResponse(millis, response.statusCode(), response.body() instanceof String ? received : 0, sent);
+    }
+    
+    // Counts the bytes of a streamed response body as they are read
+    private static class CountingInputStream extends FilterInputStream {
+        private final EndpointStats stats;
+        
+        CountingInputStream(InputStream stream, EndpointStats stats) {
+            super(stream);
+            this.stats = stats;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            
+            if (b >= 0)
+                stats.recordBytesIn(1);
+            
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            
+            if (count > 0)
+                stats.recordBytesIn(count);
+            
+            return count;
+        }
+    }
+    
+    // @return The throttle of every host a request has been sent to
+    public static Collection<HostThrottle> getHostThrottles() {
+        return hostThrottles.values();
+    }
+    
+    /*
+        @key The cache key of the request
+        @cached The entry that was stored for the request before it was sent, or null if there wasn't one
+        @response The response from the server
+        @return The stored body if the server replied 304 Not Modified, otherwise the response itself
+    */
+    private static HttpResponse<String> revalidate(String key, CacheEntry cached, HttpResponse<String> response) {
+        if (response.statusCode() == 304 && cached != null) {
+            cache.recordHit(utf8Length(cached.body));
+            return new CachedResponse(response, cached.body);
+        }
+        
+        if (response.statusCode() == 200) {
+            cache.recordMiss(); // Counted even if the response can't be stored, so the hit ratio covers every download
+            
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            
+            // Only responses with a validator can be revalidated later, so there is no point storing the others
+            if (etag != null || lastModified != null)
+                cache.put(key, new CacheEntry(etag, lastModified, response.body()));
         }
         
         return response;
     }
     
+    /*
+        Counts the bytes without encoding the body, since a large response would otherwise be copied just to be measured.
+        
+        @text A decoded body
+        @return The number of bytes the text takes in UTF-8, which is what String.length() gets wrong for anything that isn't ASCII
+    */
+    static long utf8Length(String text) {
+        long bytes = 0;
+        
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            
+            if (c < 0x80)
+                bytes += 1;
+            else if (c < 0x800)
+                bytes += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4; // A surrogate pair is one code point
+                i++;
+            }
+            else if (Character.isSurrogate(c))
+                bytes += 1; // An unpaired surrogate is encoded as '?'
+            else
+                bytes += 3;
+        }
+        
+        return bytes;
+    }
+    
+    /*
+        Lets cached responses outlive the token they were downloaded with. The token changes on every refresh, so responses sent with the
+        credential are stored under the identity instead, and a new token for the same student still revalidates them.
+        
+        @credential The Authorization header value, Example: "Bearer abc"
+        @identity A value that stays the same for the student, such as their user ID
+        @replaced The Authorization header value this one replaces, which is forgotten, or null
+    */
+    public static void setCacheIdentity(String credential, String identity, String replaced) {
+        cacheIdentities.put(credential, identity);
+        
+        if (replaced != null && !replaced.equals(credential))
+            cacheIdentities.remove(replaced);
+    }
+    
+    /*
+        @headers The request headers as key value pairs
+        @return The identity registered for the Authorization header, or the header itself if there isn't one, or the Cookie header if there is no Authorization header. Returns null if neither is present.
+    */
+    private static String getIdentity(String... headers) {
+        String cookie = null;
+        
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            if (headers[i].equalsIgnoreCase("Authorization"))
+                return cacheIdentities.getOrDefault(headers[i + 1], headers[i + 1]);
+            
+            if (headers[i].equalsIgnoreCase("Cookie"))
+                cookie = headers[i + 1];
+        }
+        
+        return cookie;
+    }
+    
+    // @return The response cache, or null if it is disabled
+    public static HttpCache getCache() {
+        return cache;
+    }
+    
     /*
         @url The url to make the network request to
         @headers The request headers to send in the network request. Each header key pair is seperated by commas, Example: Networking.Get("https://google.com/", "User-Agent", "My Useragent")
@@ -71,6 +495,139 @@ public class Networking {
         }
     }
     
+    /*
+        @url The url to make the network request to
+        @headers The request headers to send in the network request. Each header key pair is seperated by commas, Example: Networking.Get("https://google.com/", "User-Agent", "My Useragent")
+        @return A future that completes with the response body as JSONObject, or with null if the request or parsing failed. The body is parsed on the parsing thread pool.
+    */
+    public static CompletableFuture<JSONObject> getJSONAsync(String url, String... headers) {
+        Profiling.Context context = Profiling.current(); // The body is parsed on the parsing thread pool, so its event needs the caller's context
+        
+        return GetAsync(url, headers).thenApplyAsync(response -> {
+            if (response == null)
+                return null;
+            
+            var scope = Profiling.restore(context);
+            try {
+                var event = Profiling.begin(new ParseEvent());
+                var json = new JSONObject(response.body());
+                Profiling.endParse(event, json.length());
+                
+                return json;
+            } catch (JSONException ex) {
+                return null;
+            } finally {
+                scope.close();
+            }
+        }, parsePool);
+    }
+    
+    /*
+        @url The url to make the network request to
+        @headers The request headers to send in the network request. Each header key pair is seperated by commas, Example: Networking.Get("https://google.com/", "User-Agent", "My Useragent")
+        @return A future that completes with the response body as JSONArray, or with null if the request or parsing failed. The body is parsed on the parsing thread pool.
+    */
+    public static CompletableFuture<JSONArray> getJSONArrayAsync(String url, String... headers) {
+        Profiling.Context context = Profiling.current(); // The body is parsed on the parsing thread pool, so its event needs the caller's context
+        
+        return GetAsync(url, headers).thenApplyAsync(response -> {
+            if (response == null)
+                return null;
+            
+            var scope = Profiling.restore(context);
+            try {
+                var event = Profiling.begin(new ParseEvent());
+                var json = new JSONArray(response.body());
+                Profiling.endParse(event, json.length());
+                
+                return json;
+            } catch (JSONException ex) {
+                return null;
+            } finally {
+                scope.close();
+            }
+        }, parsePool);
+    }
+    
+    // Reads a response body from its network stream
+    public interface StreamReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+    
+    /*
+        The body is handed to the reader as it downloads instead of being stored in a string first, so these responses skip the response cache.
+        
+        @url The url to make the network request to
+        @reader Reads the response body on the parsing thread pool. The stream is closed after it returns.
+        @headers The request headers to send in the network request. Each header key pair is seperated by commas, Example: Networking.Get("https://google.com/", "User-Agent", "My Useragent")
+        @return A future that completes with the value returned by the reader, or with null if the request failed, the status was not 200, or the reader threw an IOException.
+    */
+    public static <T> CompletableFuture<T> streamAsync(String url, StreamReader<T> reader, String... headers) {
+        HttpRequest.Builder request;
+        Endpoint endpoint;
+        EndpointStats stats;
+        NetworkEvent event;
+        
+        try {
+            var uri = new URI(url);
+            endpoint = Endpoint.of(uri);
+            stats = Metrics.of(uri);
+            event = Profiling.beginNetwork(uri);
+            
+            request = HttpRequest.newBuilder()
+            .uri(uri)
+            .timeout(endpoint.getRequestTimeout()) // This only limits the wait for the response headers. The body is read as it arrives
+            .GET();
+
+            if (headers.length > 0)
+                request.headers(headers);
+            
+            if (HttpClientConfig.compression)
+                request.setHeader("Accept-Encoding", "gzip, deflate");
+        } 
+        catch (URISyntaxException | IllegalArgumentException ex) {
+            System.out.println("Error! Failed to connect to " + url);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        long start = System.nanoTime();
+        Profiling.Context context = Profiling.current(); // The reader runs on the parsing thread pool, so its events need the caller's context
+        var exchange = new Exchange<InputStream>();
+        
+        return submit(request, () -> exchange.send(() -> clientFor(endpoint).sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream())))
+            .whenComplete((response, ex) -> {
+                if (ex == null)
+                    endpoint.recordLatency(exchange.finish());
+                
+                record(stats, start, response, 0); // The body hasn't been read yet, so its bytes are counted as the reader reads them
+                Profiling.endNetwork(event, response);
+            })
+            .thenApplyAsync(response -> {
+                var scope = Profiling.restore(context);
+                
+                try (InputStream body = HttpClientConfig.decodedStream(response, new CountingInputStream(response.body(), stats))) {
+                    if (response.statusCode() != 200)
+                        return null;
+                    
+                    // The reader downloads the body as it parses it, so this phase includes the time spent waiting for the rest of the body
+                    var parse = Profiling.begin(new ParseEvent());
+                    T result = reader.read(body);
+                    Profiling.endParse(parse, result instanceof Integer count ? count : 0);
+                    
+                    return result;
+                } catch (IOException ex) {
+                    System.out.println("Error! Failed to read the response from " + url);
+                    return null;
+                } finally {
+                    scope.close();
+                }
+            }, parsePool)
+            .exceptionally(ex -> {
+                System.out.println("Error! Failed to connect to " + url);
+                return null;
+            });
+    }
+    
     /*
         @url The url to make the network request to
         @headers The request headers to send in the network request. Each header key pair is seperated by commas, Example: Networking.Get("https://google.com/", "User-Agent", "My Useragent")
@@ -97,22 +654,46 @@ public class Networking {
     */
     public static HttpResponse<String> Post(String url, String data, String... headers) {
         HttpResponse<String> response;
+        EndpointStats stats = null;
+        long start = System.nanoTime();
+        long sent = data.getBytes(StandardCharsets.UTF_8).length;
         
         try {        
+            var uri = new URI(url);
+            var endpoint = Endpoint.of(uri);
+            stats = Metrics.of(uri);
+            
             var request = HttpRequest.newBuilder()
-            .uri(new URI(url))
+            .uri(uri)
+            .timeout(endpoint.getRequestTimeout())
             .POST(HttpRequest.BodyPublishers.ofString(data)); 
             
             if (headers.length > 0)
                 request.headers(headers);
+            
+            if (HttpClientConfig.compression)
+                request.setHeader("Accept-Encoding", "gzip, deflate");
 
-            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            // A POST isn't safe to send twice, so it waits in the same limiters as a GET but is never retried
+            response = throttleFor(request).submitOnce(() -> limiter.submit(() -> clientFor(endpoint).sendAsync(request.build(), HttpClientConfig.decodedString()))).get();
         } 
-        catch (URISyntaxException | IOException | InterruptedException ex){
+        catch (URISyntaxException | IllegalArgumentException | ExecutionException | InterruptedException ex){
+            if (ex instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            
             System.out.println("Error! Failed to connect to " + url);
+            
+            if (stats != null)
+                stats.recordError((System.nanoTime() - start) / 1000000, sent);
+            
             return null;
         }
         
+        record(stats, start, response, sent);
+        
+        if (response.statusCode() == 429 || response.statusCode() == 503)
+            System.out.println("Warning! eLearn is receiving too many requests, so it refused to " + url + ". Try again later");
+        
         return response;
     }
 }
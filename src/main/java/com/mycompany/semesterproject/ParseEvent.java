@@ -0,0 +1,18 @@
+package com.mycompany.semesterproject;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.mycompany.semesterproject.Parse")
+@Label("Parse")
+@Description("Parsing one response body into JSON, or streaming it through a reader")
+@Category({"eLearn", "Phase"})
+@StackTrace(false)
+class ParseEvent extends PhaseEvent {
+    @Label("Items")
+    @Description("The number of top level JSON values, or the number of items a streaming reader returned")
+    int items;
+}
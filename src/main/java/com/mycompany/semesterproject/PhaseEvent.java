@@ -0,0 +1,16 @@
+package com.mycompany.semesterproject;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+// The fields every phase event has, so a recording can group the phases of one action together
+abstract class PhaseEvent extends Event {
+    @Label("Action ID")
+    @Description("The menu action or batch run this phase belongs to")
+    long actionId;
+    
+    @Label("Course ID")
+    @Description("The course the phase worked on, or null if it wasn't for one course")
+    String courseId;
+}
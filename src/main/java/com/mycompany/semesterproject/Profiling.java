@@ -0,0 +1,223 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/*
+    Java Flight Recorder events for each phase of a menu action: Authorize, the network requests, parsing, the schedule traversal and rendering.
+    Every event carries the ID of the action it belongs to, and the course ID when the phase was for one course.
+    
+    The action and course are kept in a thread local context. Work that moves to another thread captures the context with current() and
+    restores it with restore(), which is how the requests and parsing on the HTTP client and parsing threads are attributed to their action.
+    
+    The events cost almost nothing unless a recording is running. Start one with the bundled settings with -Delearn.jfr.record=<file>, or with
+    -XX:StartFlightRecording:settings=<path to elearn.jfc>,filename=<file>.
+*/
+public class Profiling {
+    // The action and course a thread is working on
+    public record Context(long actionId, String courseId) {
+        static final Context NONE = new Context(0, null);
+    }
+    
+    // Restores the context that was current before it was opened. Close it in a finally block right after the work it covers
+    public static class Scope implements AutoCloseable {
+        private final Context previous;
+        
+        private Scope(Context next) {
+            this.previous = context.get();
+            context.set(next);
+        }
+        
+        @Override
+        public void close() {
+            context.set(previous);
+        }
+    }
+    
+    // An action that is running. Closing it commits its event and restores the previous context
+    public static class Action extends Scope {
+        private final ActionEvent event = new ActionEvent();
+        private final Action previousAction;
+        
+        private Action(long actionId, String name) {
+            super(new Context(actionId, null));
+            previousAction = action.get();
+            action.set(this);
+            event.actionId = actionId;
+            event.action = name;
+            event.begin();
+        }
+        
+        // @courses The number of courses the action was for
+        public void setCourses(int courses) {
+            event.courses = courses;
+        }
+        
+        // @rows The number of rows the action showed
+        public void addRows(int rows) {
+            event.rows += rows;
+        }
+        
+        @Override
+        public void close() {
+            event.commit();
+            action.set(previousAction);
+            super.close();
+        }
+    }
+    
+    private static final AtomicLong actions = new AtomicLong();
+    private static final ThreadLocal<Context> context = ThreadLocal.withInitial(() -> Context.NONE);
+    private static final ThreadLocal<Action> action = new ThreadLocal<>();
+    private static Recording recording; // The recording started by elearn.jfr.record, or null
+    
+    /*
+        @name What the action is called, such as the menu option's text
+        @return The running action. Close it once the results have been shown
+    */
+    public static Action action(String name) {
+        return new Action(actions.incrementAndGet(), name);
+    }
+    
+    // @return The action started on this thread that is still running, or null if there is none
+    public static Action currentAction() {
+        return action.get();
+    }
+    
+    /*
+        @courseId The course the work in the scope is for
+        @return A scope to close once the course's work has been started
+    */
+    public static Scope course(String courseId) {
+        return new Scope(new Context(context.get().actionId(), courseId));
+    }
+    
+    // @return The context of this thread, to restore on another thread
+    public static Context current() {
+        return context.get();
+    }
+    
+    /*
+        @captured A context captured with current() on another thread
+        @return A scope to close once the work for the context is done
+    */
+    public static Scope restore(Context captured) {
+        return new Scope(captured);
+    }
+    
+    /*
+        @work Work to run on another thread
+        @return The same work, run in the context of the thread that called this
+    */
+    public static <T> Supplier<T> wrap(Supplier<T> work) {
+        Context captured = current();
+        
+        return () -> {
+            var scope = restore(captured);
+            try {
+                return work.get();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+    
+    // @return A started event of the type for the current context
+    static <T extends PhaseEvent> T begin(T event) {
+        Context current = context.get();
+        event.actionId = current.actionId();
+        event.courseId = current.courseId();
+        event.begin();
+        return event;
+    }
+    
+    /*
+        @uri The url of the request
+        @return A started network event for the current context
+    */
+    static NetworkEvent beginNetwork(URI uri) {
+        var event = begin(new NetworkEvent());
+        event.endpoint = Metrics.templateOf(uri);
+        return event;
+    }
+    
+    /*
+        @event The network event returned by beginNetwork
+        @response The response, or null if the request failed
+    */
+    static void endNetwork(NetworkEvent event, HttpResponse<?> response) {
+        event.end();
+        
+        if (!event.shouldCommit())
+            return;
+        
+        if (response != null) {
+            event.status = response.statusCode();
+            event.bytes = response.headers().firstValueAsLong("Content-Length").orElse(response.body() instanceof String body ? Networking.utf8Length(body) : 0);
+        }
+        
+        event.commit();
+    }
+    
+    /*
+        @event A started event
+        @items The number of items the phase produced
+    */
+    static void endParse(ParseEvent event, int items) {
+        event.items = items;
+        event.commit();
+    }
+    
+    static void endTraverse(TraverseEvent event, int items) {
+        event.items = items;
+        event.commit();
+    }
+    
+    static void endRender(RenderEvent event, int rows) {
+        event.rows = rows;
+        event.commit();
+        
+        Action running = currentAction();
+        
+        if (running != null)
+            running.addRows(rows);
+    }
+    
+    /*
+        Starts a recording with the bundled elearn.jfc settings if elearn.jfr.record names a file. The recording is written to the file when the program exits.
+    */
+    public static void startRecording() {
+        String file = Settings.getString("elearn.jfr.record", null);
+        
+        if (file == null || recording != null)
+            return;
+        
+        InputStream stream = Profiling.class.getResourceAsStream("/elearn.jfc");
+        
+        if (stream == null) {
+            System.err.println("Warning! Failed to start the flight recording: elearn.jfc is missing from the classpath");
+            return;
+        }
+        
+        try (Reader settings = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            recording = new Recording(Configuration.create(settings));
+            recording.setName("eLearn");
+            recording.setDestination(Path.of(file));
+            recording.setDumpOnExit(true);
+            recording.start();
+        } catch (IOException | ParseException | IllegalStateException | SecurityException ex) {
+            System.err.println("Warning! Failed to start the flight recording: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.json.JSONArray;
+
+/*
+    Downloads the student's deadlines, grades and calendar events for a list of courses.
+    It is shared by the menus and the batch mode, so it never prints the results itself.
+    The student must already be authorized before any of these are called.
+*/
+public class Queries {
+    /*
+        @elearn The student's logged in and authorized session
+        @courses The courses to download assignments for
+        @return Every assignment for the courses with no time limit. Courses that could not be downloaded are counted in failedCourses
+    */
+    public static Schedule fetchAssignments(eLearn elearn, List<Course> courses) {
+        Schedule schedule = new Schedule(0, 0); // Initialize Schedule object without a time limit, so every time window can be shown from it
+        var requests = new ArrayList<CompletableFuture<Boolean>>();
+        boolean streaming = Settings.getBoolean("elearn.sequences.streaming", true); // Whether to read assignments straight from the response stream instead of building a JSONObject
+        String token = elearn.auth.token;
+        HistoryStore history = elearn.getHistory();
+        long fetchedAt = System.currentTimeMillis();
+         
+        // Iterate through selected courses
+        for (int i = 0; i < courses.size(); i++) {
+            Course course = courses.get(i);
+            String assignmentsUrl = getAssignmentsUrl(course.id);
+
+            // Start a GET request to the API endpoint responsible for listing all the student's assignments for the specified course
+            // All the courses are requested at the same time, so we don't wait for one course to finish before requesting the next
+            // The course's scope tags the request's flight recorder events with its course ID
+            var scope = Profiling.course(course.id);
+            try {
+                if (streaming) {
+                    // Each assignment is added to the schedule as soon as it is read, so the whole response is never held in memory
+                    var observed = new ScheduleIndex(); // This course's assignments, for the history
+                    
+                    requests.add(Networking.streamAsync(assignmentsUrl, body -> SequenceParser.parse(body, (title, deadline, submitted) -> {
+                        synchronized (schedule) {
+                            schedule.addAssignment(title, deadline, submitted);
+                        }
+                        
+                        observed.add(deadline, new Assignment(title, submitted == null ? Assignment.NONE : submitted));
+                    }), "Authorization", "Bearer " + token).thenApply(count -> {
+                        if (count != null)
+                            record(history, fetchedAt, Snapshot.Kind.DEADLINES, course, observed);
+                        
+                        return count != null;
+                    }));
+                }
+                else {
+                    // Parse the JSON object of assignments and add them to the schedule
+                    Profiling.Context context = Profiling.current(); // The assignments are added on the parsing thread, so the traversal event needs this context
+                    
+                    requests.add(Networking.getJSONAsync(assignmentsUrl, "Authorization", "Bearer " + token).thenApply(assignmentsJSON -> {
+                        // Parse into a schedule of its own first, so the course's assignments can also be recorded in the history
+                        var courseSchedule = new Schedule(0, 0);
+                        
+                        var traversal = Profiling.restore(context);
+                        try {
+                            var event = Profiling.begin(new TraverseEvent());
+                            courseSchedule.addAssignments(assignmentsJSON);
+                            Profiling.endTraverse(event, courseSchedule.items.size());
+                        } finally {
+                            traversal.close();
+                        }
+                        
+                        synchronized (schedule) {
+                            schedule.items.addAll(courseSchedule.items);
+                        }
+                        
+                        if (assignmentsJSON != null)
+                            record(history, fetchedAt, Snapshot.Kind.DEADLINES, course, courseSchedule.items);
+                        
+                        return assignmentsJSON != null;
+                    }));
+                }
+            } finally {
+                scope.close();
+            }
+        }
+        
+        // Wait for every course to be added to the schedule
+        for (var request : requests) {
+            if (!request.join())
+                schedule.failedCourses++;
+        }
+        
+        return schedule;
+    }
+    
+    /*
+        @elearn The student's logged in and authorized session
+        @courses The courses to download grades for
+        @sortByDate Whether or not to sort by date. If false, then it will sort by grade.
+        @return Every grade for the courses. Courses that could not be downloaded are counted in failedCourses
+    */
+    public static Schedule fetchGrades(eLearn elearn, List<Course> courses, boolean sortByDate) {
+        Schedule schedule = new Schedule(0, 0); // Initialize schedule object
+        var requests = new ArrayList<CompletableFuture<JSONArray>>();
+        HistoryStore history = elearn.getHistory();
+        long fetchedAt = System.currentTimeMillis();
+         
+        for (int i = 0; i < courses.size(); i++) {
+            String gradesUrl = getGradesUrl(courses.get(i).id, elearn.auth.userId);
+
+            // Start a GET request to the API endpoint responsible for showing all the student's grades for the specified course
+            // All the courses are requested at the same time, so we don't wait for one course to finish before requesting the next
+            var scope = Profiling.course(courses.get(i).id);
+            try {
+                requests.add(Networking.getJSONArrayAsync(gradesUrl, "Authorization", "Bearer " + elearn.auth.token));
+            } finally {
+                scope.close();
+            }
+        }
+        
+        // Wait for each course's parsed grades and add them to the schedule object
+        for (int i = 0; i < requests.size(); i++) {
+            var gradesJSON = requests.get(i).join();
+            
+            if (gradesJSON == null) {
+                schedule.failedCourses++;
+                continue;
+            }
+            
+            // The history always stores grades keyed by date, so parse them that way and swap the keys afterwards if they are sorted by grade
+            var byDate = new Schedule(0, 0);
+            
+            var scope = Profiling.course(courses.get(i).id);
+            try {
+                var event = Profiling.begin(new TraverseEvent());
+                byDate.addGrades(gradesJSON, true);
+                Profiling.endTraverse(event, byDate.items.size());
+            } finally {
+                scope.close();
+            }
+            
+            record(history, fetchedAt, Snapshot.Kind.GRADES, courses.get(i), byDate.items);
+            
+            if (sortByDate)
+                schedule.items.addAll(byDate.items);
+            else
+                byDate.items.forEach((date, grade) -> schedule.items.add(grade.epoch, new Assignment(grade.title, date)));
+        }
+        
+        return schedule;
+    }
+    
+    /*
+        @elearn The student's logged in and authorized session
+        @courses The courses to download calendar events for
+        @return Every calendar event for the courses with no time limit. Courses that could not be downloaded are counted in failedCourses
+    */
+    public static Schedule fetchEvents(eLearn elearn, List<Course> courses) {
+        Schedule schedule = new Schedule(0, 0); // Initialize a Schedule object without a time limit, so every time window can be shown from it
+        var requests = new ArrayList<CompletableFuture<JSONArray>>();
+        HistoryStore history = elearn.getHistory();
+        long fetchedAt = System.currentTimeMillis();
+         
+        // Iterate the course(s) the student selected
+        for (int i = 0; i < courses.size(); i++) {
+            String calendarUrl = getEventsUrl(courses.get(i).id);
+
+            // Start a GET request to the API endpoint responsible for showing all the calendar events for the student's selected course
+            // All the courses are requested at the same time, so we don't wait for one course to finish before requesting the next
+            var scope = Profiling.course(courses.get(i).id);
+            try {
+                requests.add(Networking.getJSONArrayAsync(calendarUrl, "Authorization", "Bearer " + elearn.auth.token));
+            } finally {
+                scope.close();
+            }
+        }
+        
+        // Wait for each course's parsed JSON array and add each calendar event to the schedule
+        for (int i = 0; i < requests.size(); i++) {
+            var calendarEvents = requests.get(i).join();
+            
+            if (calendarEvents == null) {
+                schedule.failedCourses++;
+                continue;
+            }
+            
+            var courseSchedule = new Schedule(0, 0);
+            
+            var scope = Profiling.course(courses.get(i).id);
+            try {
+                var event = Profiling.begin(new TraverseEvent());
+                courseSchedule.addCalendar(calendarEvents);
+                Profiling.endTraverse(event, courseSchedule.items.size());
+            } finally {
+                scope.close();
+            }
+            
+            record(history, fetchedAt, Snapshot.Kind.CALENDAR, courses.get(i), courseSchedule.items);
+            schedule.items.addAll(courseSchedule.items);
+        }
+        
+        return schedule;
+    }
+    
+    /*
+        Appends one course's downloaded items to the history. A failure to write is only a warning, since the items were still downloaded.
+        
+        @history The student's history, or null if it is turned off
+    */
+    private static void record(HistoryStore history, long fetchedAt, Snapshot.Kind kind, Course course, ScheduleIndex items) {
+        if (history == null)
+            return;
+        
+        try {
+            history.append(fetchedAt, kind, course.id, items);
+        } catch (IOException ex) {
+            System.out.println("Warning! Failed to record the history: " + ex.getMessage());
+        }
+    }
+    
+    // @return The url of the API endpoint responsible for listing all the student's assignments for a course
+    static String getAssignmentsUrl(String courseId) {
+        return Urls.api("sequences", String.format("/%s?deepEmbedEntities=1&embedDepth=1&filterOnDatesAndDepth=0", courseId));
+    }
+    
+    // @return The url of the API endpoint responsible for showing all the student's grades for a course
+    static String getGradesUrl(String courseId, String userId) {
+        return Urls.elearn(String.format("/d2l/api/le/1.67/%s/grades/values/%s/", courseId, userId));
+    }
+    
+    // @return The url of the API endpoint responsible for showing all the calendar events for a course
+    static String getEventsUrl(String courseId) {
+        return Urls.elearn(String.format("/d2l/api/le/1.67/%s/calendar/events/", courseId));
+    }
+}
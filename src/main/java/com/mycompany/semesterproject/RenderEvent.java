@@ -0,0 +1,17 @@
+package com.mycompany.semesterproject;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.mycompany.semesterproject.Render")
+@Label("Render")
+@Description("Formatting and printing the results")
+@Category({"eLearn", "Phase"})
+@StackTrace(false)
+class RenderEvent extends PhaseEvent {
+    @Label("Rows")
+    int rows;
+}
@@ -0,0 +1,109 @@
+package com.mycompany.semesterproject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Limits how many asynchronous requests can be in flight at once. Requests over the limit wait in a queue without blocking the caller's thread.
+class RequestLimiter {
+    private int limit; // The maximum number of requests that can be in flight at once
+    private int active; // The number of requests currently in flight
+    private final ArrayDeque<Runnable> waiting; // Requests waiting for a free slot, in the order they were submitted
+    
+    public RequestLimiter(int limit) {
+        this.limit = Math.max(1, limit);
+        this.waiting = new ArrayDeque<>();
+    }
+    
+    /*
+        @task Starts the request. It is only called once a slot is free.
+        @return A future that completes with the result of the request
+    */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        var result = new CompletableFuture<T>();
+        
+        Runnable start = () -> {
+            CompletableFuture<T> request;
+            
+            try {
+                request = task.get();
+            } catch (RuntimeException ex) {
+                release();
+                result.completeExceptionally(ex);
+                return;
+            }
+            
+            request.whenComplete((value, ex) -> {
+                release(); // Free the slot before completing so the next queued request starts right away
+                
+                if (ex != null)
+                    result.completeExceptionally(ex);
+                else
+                    result.complete(value);
+            });
+        };
+        
+        synchronized (this) {
+            if (active >= limit) {
+                waiting.add(start);
+                return result;
+            }
+            
+            active++;
+        }
+        
+        start.run();
+        return result;
+    }
+    
+    // Frees a slot, or hands it straight to the next waiting request
+    private void release() {
+        Runnable next;
+        
+        synchronized (this) {
+            if (active > limit || (next = waiting.poll()) == null) {
+                active--;
+                return;
+            }
+        }
+        
+        next.run();
+    }
+    
+    /*
+        Changes the limit. If it is lowered, requests already in flight finish normally and no new ones start until the count is under the new limit.
+        
+        @limit The new maximum number of requests that can be in flight at once
+    */
+    public void setLimit(int limit) {
+        var started = new ArrayList<Runnable>();
+        
+        synchronized (this) {
+            this.limit = Math.max(1, limit);
+            
+            // If the limit went up, start as many waiting requests as there are new slots
+            while (active < this.limit && !waiting.isEmpty()) {
+                active++;
+                started.add(waiting.poll());
+            }
+        }
+        
+        started.forEach(Runnable::run);
+    }
+    
+    // @return The number of requests waiting for a free slot
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+    
+    // @return The maximum number of requests that can be in flight at once
+    public synchronized int getLimit() {
+        return limit;
+    }
+    
+    // @return The number of requests currently in flight
+    public synchronized int getActive() {
+        return active;
+    }
+}
@@ -0,0 +1,10 @@
+package com.mycompany.semesterproject;
+
+// Receives the results of each account as soon as the account finishes
+interface ResultSink {
+    /*
+        @account The session file of the account
+        @result The account's results and exit status
+    */
+    void write(String account, Batch.Result result);
+}
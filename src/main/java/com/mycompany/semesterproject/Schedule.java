@@ -1,22 +1,25 @@
 package com.mycompany.semesterproject;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-import java.util.TimeZone;
-import java.util.TreeMap;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 class Assignment {
+    public static final long NONE = Long.MIN_VALUE; // Stored in epoch when there is no value, such as an assignment that wasn't submitted
+    
     public String title; // The name of the assignment
-    public Long epoch; // An epoch timestamp for when it was submitted
+    public long epoch; // An epoch timestamp for when it was submitted, or Assignment.NONE
     
-    public Assignment(String title, Long epoch) {
+    public Assignment(String title, long epoch) {
         this.title = title;
         this.epoch = epoch;
     }
@@ -26,9 +29,9 @@ class Assignment {
         return this.title;
     }
     
-    // @return True if this.epoch is not null, false otherwise
+    // @return True if this.epoch is not Assignment.NONE, false otherwise
     boolean isSubmitted() {
-        return this.epoch != null;
+        return this.epoch != NONE;
     }
     
     // @return The timestamp string of this.epoch
@@ -36,17 +39,28 @@ class Assignment {
         if (!this.isSubmitted())
             return null;
         
-        SimpleDateFormat df = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
-        return df.format(new Date(this.epoch));
+        return Schedule.SUBMITTED_FORMAT.format(Instant.ofEpochMilli(this.epoch));
     }
 }
 
 public class Schedule {
-    public TreeMap<Long, List<Assignment>> items; // A TreeMap that sorts entries by the key
+    // The layout of the timestamps the API sends for grades, calendar events and submissions. It is parsed without a formatter because it is by far the most common
+    private static final String API_TIMESTAMP_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+    
+    private static final ZoneId LOCAL_ZONE = ZoneId.systemDefault(); // The student's timezone
+    private static final ZoneOffset LOCAL_FIXED_OFFSET = LOCAL_ZONE.getRules().isFixedOffset() ? LOCAL_ZONE.getRules().getOffset(Instant.EPOCH) : null; // The offset of the student's timezone if it never changes, otherwise null
+    
+    // DateTimeFormatters are immutable and thread safe, so they are created once and shared by every thread
+    static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("MMM dd yyyy HH:mm:ss").withZone(LOCAL_ZONE);
+    static final DateTimeFormatter SUBMITTED_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss").withZone(LOCAL_ZONE);
+    private static final ConcurrentHashMap<String, DateTimeFormatter> parsers = new ConcurrentHashMap<>(); // Formatters for any other format passed to timestampToEpoch
+    
+    public ScheduleIndex items; // The items sorted by key
     private long minTime, maxTime; // The minimum epoch and maxmimum epoch time for an item to be stored
+    public int failedCourses; // The number of courses whose items could not be downloaded into this schedule
     
     public Schedule(long minTime, long maxTime) {
-        this.items = new TreeMap<>();
+        this.items = new ScheduleIndex();
         this.minTime = minTime;
         this.maxTime = maxTime;
     }
@@ -65,16 +79,12 @@ public class Schedule {
             String name = obj.getString("GradeObjectName"); // The name of the grade
             double numerator = obj.getDouble("PointsNumerator"); // The points the student received
             double denominator = obj.getDouble("PointsDenominator"); // The total points for the grade possible
-            Long dateEpoch = Schedule.timestampToEpoch(obj.getString("LastModified"), "yyyy-MM-dd'T'HH:mm:ss", false); // The numeric epoch of the timestamp when this was graded
-            Long gradeKey = (long)((numerator / denominator) * 10000); // The grade multiplied by 10,000 and stored as a long. It is multiplied by 10,000 because longs can't have decimal points and I want to keep some precision.
+            Long parsedDate = Schedule.timestampToEpoch(obj.getString("LastModified"), "yyyy-MM-dd'T'HH:mm:ss", false);
+            long dateEpoch = parsedDate == null ? Assignment.NONE : parsedDate; // The numeric epoch of the timestamp when this was graded
+            long gradeKey = (long)((numerator / denominator) * 10000); // The grade multiplied by 10,000 and stored as a long. It is multiplied by 10,000 because longs can't have decimal points and I want to keep some precision.
             
-            // If sorting by date, then the key in the map will be the date epoch, but if sorting by grade then the key in the map will be the grade * 10,000 as a long.
-            
-            var gradeList = items.getOrDefault(sortByDate ? dateEpoch : gradeKey, new ArrayList<>()); // Get the grade list from the map, or construct one if not found
-
-            gradeList.add(new Assignment(name, sortByDate ? gradeKey : dateEpoch)); // Add the current grade to our list
-
-            items.put(sortByDate ? dateEpoch : gradeKey, gradeList); // Put the list into our map
+            // If sorting by date, then the key in the index will be the date epoch, but if sorting by grade then the key in the index will be the grade * 10,000 as a long.
+            items.add(sortByDate ? dateEpoch : gradeKey, new Assignment(name, sortByDate ? gradeKey : dateEpoch));
         }
     }
     
@@ -91,16 +101,11 @@ public class Schedule {
             // Add the calendar event if it has an end date
             if (event.has("EndDateTime")) {
                 var title = event.getString("Title"); // Get the title of the current calendar event
-                var endEpoch = this.timestampToEpoch(event.getString("EndDateTime"), "yyyy-MM-dd'T'HH:mm:ss", false); // Get the numeric epoch of the end date time
+                var endEpoch = Schedule.timestampToEpoch(event.getString("EndDateTime"), "yyyy-MM-dd'T'HH:mm:ss", false); // Get the numeric epoch of the end date time
                 
-                // If the end time is in our minTime and maxTime range, then add it to our schedule
-                if (endEpoch >= minTime && (maxTime == 0 || endEpoch <= maxTime)) {
-                    var calendarList = items.getOrDefault(endEpoch, new ArrayList<>()); // Get the calendar list for all events that have this endEpoch, or construct a new list if one isn't found
-
-                    calendarList.add(new Assignment(title, null)); // Add the calendar event to the list
-
-                    items.put(endEpoch, calendarList); // Put the list in our map
-                }
+                // If the end time is in our minTime and maxTime range, then add it to our schedule. An end time that couldn't be read is skipped
+                if (endEpoch != null && endEpoch >= minTime && (maxTime == 0 || endEpoch <= maxTime))
+                    items.add(endEpoch, new Assignment(title, Assignment.NONE)); // Add the calendar event using its end time as the key
             }
         }
     }
@@ -129,8 +134,7 @@ public class Schedule {
             if (isCompletion && hasDate) {
                 String completedTimestamp = json.getJSONObject("properties").getString("date"); // Get the string timestamp for the submission
                 
-                SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-                return this.timestampToEpoch(completedTimestamp, "yyyy-MM-dd'T'HH:mm:ss", false); // Return the numeric epoch parsed from the timestamp string
+                return Schedule.timestampToEpoch(completedTimestamp, "yyyy-MM-dd'T'HH:mm:ss", false); // Return the numeric epoch parsed from the timestamp string
             }
         }
         
@@ -151,39 +155,130 @@ public class Schedule {
     }
     
     /*
-        @timestamp The string timestamp to be converted to a numeric epoch value
+        @timestamp The string timestamp to be converted to a numeric epoch value. Any text after the format, such as milliseconds or a "Z", is ignored
         @format The format of the string timestamp
-        @bypassTimezoneConversion It will ignore the local timezone conversion when parsing the timestamp string
+        @bypassTimezoneConversion If false, the timestamp is read as UTC, which is what the API uses. If true, it is read as the student's local time
     
         @return A Long epoch value for the string timestamp, or null if it failed parsing the string.
     */
     public static Long timestampToEpoch(String timestamp, String format, boolean bypassTimzoneConversion) {
-        try {
-            SimpleDateFormat formatter = new SimpleDateFormat(format);
-            
-            if (!bypassTimzoneConversion) {
-                formatter.setTimeZone(TimeZone.getTimeZone(java.util.Calendar.getInstance().getTimeZone().getDisplayName())); // Set formatter timezone to local timezone
+        Long epoch;
+        
+        if (format.equals(API_TIMESTAMP_FORMAT)) {
+            // Read the fixed position fields directly: yyyy-MM-ddTHH:mm:ss
+            if (timestamp.length() >= 19 && timestamp.charAt(4) == '-' && timestamp.charAt(7) == '-' && timestamp.charAt(10) == 'T' && timestamp.charAt(13) == ':' && timestamp.charAt(16) == ':') {
+                int[] fields = {
+                    digits(timestamp, 0, 4), digits(timestamp, 5, 2), digits(timestamp, 8, 2),
+                    digits(timestamp, 11, 2), digits(timestamp, 14, 2), digits(timestamp, 17, 2)
+                };
+                
+                // Any field that isn't all digits means this isn't a timestamp at all
+                if (Arrays.stream(fields).anyMatch(field -> field < 0))
+                    epoch = null;
+                else
+                    epoch = fieldsToEpoch(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], !bypassTimzoneConversion);
             }
-            
-            Date date = formatter.parse(timestamp);
-            return date.getTime();   
-        } catch (ParseException ex) {
+            else
+                epoch = null;
+        }
+        else {
+            try {
+                var formatter = parsers.computeIfAbsent(format, pattern -> DateTimeFormatter.ofPattern(pattern).withResolverStyle(ResolverStyle.LENIENT)); // Lenient like SimpleDateFormat, so hour 24 is midnight of the next day
+                var date = LocalDateTime.from(formatter.parse(timestamp, new ParsePosition(0))); // A ParsePosition allows text after the format, like SimpleDateFormat did
+                
+                epoch = (bypassTimzoneConversion ? date.atZone(LOCAL_ZONE).toInstant() : date.toInstant(ZoneOffset.UTC)).toEpochMilli();
+            } catch (DateTimeException | IllegalArgumentException ex) {
+                epoch = null;
+            }
+        }
+        
+        if (epoch == null)
             System.out.println("Failed to determine epoch timestamp for " + timestamp);
+        
+        return epoch;
+    }
+    
+    /*
+        Fields out of their range roll over into the next field the way the lenient SimpleDateFormat did, so hour 24 is midnight
+        of the next day, second 60 is the next minute and month 13 is January of the next year.
+        
+        @return The epoch of the date and time
+    */
+    private static long fieldsToEpoch(int year, int month, int day, int hour, int minute, int second, boolean utc) {
+        year += Math.floorDiv(month - 1, 12);
+        month = Math.floorMod(month - 1, 12) + 1;
+        
+        // The offset is only looked up per date if the student's timezone has daylight saving time
+        if (!utc && LOCAL_FIXED_OFFSET == null) {
+            return LocalDateTime.of(year, month, 1, 0, 0)
+                .plusDays(day - 1L).plusHours(hour).plusMinutes(minute).plusSeconds(second)
+                .atZone(LOCAL_ZONE).toInstant().toEpochMilli();
         }
         
-        return null;
+        // Days since 1970-01-01, counted with years starting in March so the leap day is at the end of the year. Days past the end of the month carry on into the next one
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * ((month + 9) % 12) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - 719468;
+        
+        long seconds = days * 86400 + hour * 3600 + minute * 60 + second;
+        
+        if (!utc)
+            seconds -= LOCAL_FIXED_OFFSET.getTotalSeconds();
+        
+        return seconds * 1000;
+    }
+    
+    // @return The number made of count digits in text starting at start, or -1 if any of them is not a digit
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            
+            if (c < '0' || c > '9')
+                return -1;
+            
+            value = value * 10 + (c - '0');
+        }
+        
+        return value;
     }
     
     /*
         @epoch The numeric epoch value of a date
-        @return A string timestamp for the provided epoch. If the provided epoch was null, then "N/A" is returned.
+        @return A string timestamp for the provided epoch. If the provided epoch was Assignment.NONE, then "N/A" is returned.
     */
-    public static String epochToTimestamp(Long epoch) {
-        if (epoch == null)
+    public static String epochToTimestamp(long epoch) {
+        if (epoch == Assignment.NONE)
             return "N/A";
         
-        DateFormat format = new SimpleDateFormat("MMM dd yyyy HH:mm:ss");        
-        return format.format(new Date(epoch));
+        return TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(epoch));
+    }
+    
+    /*
+        @title The name of the assignment
+        @deadline The epoch of the assignment's due date
+        @submitted The epoch of when the assignment was submitted, or null if it wasn't submitted
+    */
+    public void addAssignment(String title, long deadline, Long submitted) {
+        // Only store the assignment if the deadline is within the minTime and maxTime range
+        // If maxTime is 0, then the maxTime limit is ignored
+        if (deadline < minTime || (maxTime != 0 && deadline > maxTime))
+            return;
+        
+        items.add(deadline, new Assignment(title, submitted == null ? Assignment.NONE : submitted)); // Add the assignment using the deadline epoch as a key
+    }
+    
+    /*
+        The sequences endpoint gives due dates as separate fields that are already in local time
+        
+        @return The epoch of the due date. Fields out of their range roll over into the next field
+    */
+    public static long dueDateToEpoch(int year, int month, int day, int hour, int minute, int second) {
+        return Schedule.fieldsToEpoch(year, month, day, hour, minute, second, false);
     }
     
     /*
@@ -206,23 +301,13 @@ public class Schedule {
                 int minute = dueDate.getInt("Minute");
                 int second = dueDate.getInt("Second");
 
-                // Construct a timestamp string using the provided fields in the json object
-                var timestamp = String.format("%02d/%02d/%04d %02d:%02d:%02d", month, day, year, hour, minute, second);
-                
-                // Get the epoch value of the timestamp that was constructed
-                // We will bypass the local timezone conversion here because this API endpoint already provided the date in local time
-                long epoch = this.timestampToEpoch(timestamp, "MM/dd/yyyy HH:mm:ss", true);   
+                // Get the epoch value of the deadline from the provided fields in the json object
+                long epoch = Schedule.dueDateToEpoch(year, month, day, hour, minute, second);
 
                 // Only store the assignment if the deadline is within the minTime and maxTime range
                 // If maxTime is 0, then the maxTime limit is ignored
-                if (epoch >= minTime && (maxTime == 0 || epoch <= maxTime)) {                    
-                    var assignmentList = items.getOrDefault(epoch, new ArrayList<>()); // Get the entry in the map for the current epoch, or construct one if one isn't found
-
-                    Long completedDate = getSubmittedDate(json); // Get the submittion date of the current assignment
-                    assignmentList.add(new Assignment(title, completedDate)); // Add the assignment to the assignment list
-
-                    items.put(epoch, assignmentList); // Put the assignmentList into the map using the deadline epoch as a key
-                }
+                if (epoch >= minTime && (maxTime == 0 || epoch <= maxTime))
+                    addAssignment(title, epoch, getSubmittedDate(json));
             }
         }
         
@@ -0,0 +1,184 @@
+package com.mycompany.semesterproject;
+
+import java.util.Arrays;
+
+/*
+    A list of items sorted by a long key, stored in two parallel arrays instead of a TreeMap of lists.
+    Items are appended without sorting, and the new items are sorted in one batch the next time the index is read.
+    Items with the same key keep the order they were added in. It is not thread safe, so callers adding from several threads must synchronize.
+*/
+public class ScheduleIndex {
+    // Receives each item in key order
+    public interface Visitor {
+        void visit(long key, Assignment item);
+    }
+    
+    private long[] keys; // The key of each item
+    private Assignment[] items; // The items, at the same position as their key
+    private int size; // The number of items stored
+    private int sorted; // The number of items at the start of the arrays that are already in key order
+    
+    public ScheduleIndex() {
+        this.keys = new long[16];
+        this.items = new Assignment[16];
+    }
+    
+    /*
+        @key The key to sort the item by
+        @item The item to store
+    */
+    public void add(long key, Assignment item) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            items = Arrays.copyOf(items, size * 2);
+        }
+        
+        keys[size] = key;
+        items[size] = item;
+        size++;
+    }
+    
+    /*
+        Items with the same key stay in the order they were added, so adding one course's items after another's keeps the courses in order.
+        
+        @other The index to copy every item from, in key order
+    */
+    public void addAll(ScheduleIndex other) {
+        other.forEach(this::add);
+    }
+    
+    // @return The number of items stored
+    public int size() {
+        return size;
+    }
+    
+    // @return True if no items are stored
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    // @visitor Called with every item in key order
+    public void forEach(Visitor visitor) {
+        sort();
+        
+        for (int i = 0; i < size; i++)
+            visitor.visit(keys[i], items[i]);
+    }
+    
+    /*
+        @minKey The smallest key to visit
+        @maxKey The largest key to visit
+        @visitor Called with every item whose key is from minKey to maxKey, in key order
+    */
+    public void forEachInRange(long minKey, long maxKey, Visitor visitor) {
+        sort();
+        
+        for (int i = firstIndexOf(minKey); i < size && keys[i] <= maxKey; i++)
+            visitor.visit(keys[i], items[i]);
+    }
+    
+    /*
+        Items with the same key are compared in the order they were added, which is the order they are shown in.
+        
+        @other The index to compare with
+        @minKey The smallest key to compare
+        @maxKey The largest key to compare
+        @return True if both indexes have the same items with the same keys from minKey to maxKey, false otherwise.
+    */
+    public boolean equalsInRange(ScheduleIndex other, long minKey, long maxKey) {
+        sort();
+        other.sort();
+        
+        int i = firstIndexOf(minKey), j = other.firstIndexOf(minKey);
+        
+        for (; i < size && keys[i] <= maxKey; i++, j++) {
+            if (j >= other.size || other.keys[j] != keys[i])
+                return false;
+            
+            if (items[i].epoch != other.items[j].epoch || !items[i].title.equals(other.items[j].title))
+                return false;
+        }
+        
+        // Every item in this range matched, so the other index must not have any more
+        return j >= other.size || other.keys[j] > maxKey;
+    }
+    
+    /*
+        @minKey The smallest key to count
+        @maxKey The largest key to count
+        @return The number of items whose key is from minKey to maxKey
+    */
+    public int countInRange(long minKey, long maxKey) {
+        if (minKey > maxKey)
+            return 0;
+        
+        sort();
+        
+        int last = maxKey == Long.MAX_VALUE ? size : firstIndexOf(maxKey + 1);
+        return last - firstIndexOf(minKey);
+    }
+    
+    // @return The position of the first item whose key is at least key, found with a binary search
+    private int firstIndexOf(long key) {
+        int low = 0, high = size;
+        
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            
+            if (keys[middle] < key)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        
+        return low;
+    }
+    
+    // Sorts the items added since the last sort and merges them into the sorted items
+    private void sort() {
+        if (sorted == size)
+            return;
+        
+        long[] keyBuffer = new long[size];
+        Assignment[] itemBuffer = new Assignment[size];
+        
+        mergeSort(sorted, size, keyBuffer, itemBuffer);
+        merge(0, sorted, size, keyBuffer, itemBuffer);
+        
+        sorted = size;
+    }
+    
+    // A stable merge sort of the items from start up to end, so items with equal keys stay in the order they were added
+    private void mergeSort(int start, int end, long[] keyBuffer, Assignment[] itemBuffer) {
+        if (end - start < 2)
+            return;
+        
+        int middle = (start + end) >>> 1;
+        
+        mergeSort(start, middle, keyBuffer, itemBuffer);
+        mergeSort(middle, end, keyBuffer, itemBuffer);
+        merge(start, middle, end, keyBuffer, itemBuffer);
+    }
+    
+    // Merges the sorted runs start..middle and middle..end, taking from the first run when keys are equal
+    private void merge(int start, int middle, int end, long[] keyBuffer, Assignment[] itemBuffer) {
+        if (start == middle || middle == end || keys[middle - 1] <= keys[middle])
+            return; // Already in order
+        
+        System.arraycopy(keys, start, keyBuffer, start, end - start);
+        System.arraycopy(items, start, itemBuffer, start, end - start);
+        
+        int left = start, right = middle;
+        
+        for (int i = start; i < end; i++) {
+            if (right >= end || (left < middle && keyBuffer[left] <= keyBuffer[right])) {
+                keys[i] = keyBuffer[left];
+                items[i] = itemBuffer[left++];
+            }
+            else {
+                keys[i] = keyBuffer[right];
+                items[i] = itemBuffer[right++];
+            }
+        }
+    }
+}
@@ -1,7 +1,32 @@
 package com.mycompany.semesterproject;
 
+import java.util.Arrays;
+
 public class SemesterProject {
     public static void main(String[] args) {
+        // --stats prints the time and bytes spent on each API endpoint when the program exits, in the menus or in batch mode
+        if (Arrays.asList(args).contains("--stats")) {
+            args = Arrays.stream(args).filter(arg -> !arg.equals("--stats")).toArray(String[]::new);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(Metrics.report())));
+        }
+        
+        // Record the flight recorder events to the file named by elearn.jfr.record
+        Profiling.startRecording();
+        
+        // Start connecting to the eLearn and Brightspace API hosts while the session is loaded
+        if (Settings.getBoolean("elearn.http.warmUp", true)) {
+            Networking.warmUp(
+                Urls.elearn("/d2l/home"),
+                Urls.api("enrollments", "/"),
+                Urls.api("organizations", "/"),
+                Urls.api("sequences", "/")
+            );
+        }
+        
+        // If any arguments are given, then run them as batch queries instead of showing the menus
+        if (args.length > 0)
+            System.exit(Batch.run(args));
+        
         var eLearn = new eLearn("session.txt"); // Initialize eLearn object
         boolean loggedIn = eLearn.Load(); // Attempt to load session cookie from disk
         
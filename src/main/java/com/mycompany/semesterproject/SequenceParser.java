@@ -0,0 +1,393 @@
+package com.mycompany.semesterproject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/*
+    Reads the response of the sequences endpoint straight from the network stream and only keeps the fields Schedule needs:
+    each entity's title, dueDate and completion date. Everything else is skipped without being stored, so memory use
+    depends on how deeply the entities are nested instead of how big the response is.
+*/
+public class SequenceParser {
+    // Receives each assignment as soon as its entity has been read
+    public interface Listener {
+        /*
+            @title The name of the assignment
+            @deadline The epoch of the assignment's due date
+            @submitted The epoch of when the assignment was submitted, or null if it wasn't submitted
+        */
+        void onAssignment(String title, long deadline, Long submitted);
+    }
+    
+    // The fields that have been read so far for the entity currently being parsed
+    private static class Entity {
+        String title; // properties.title
+        String completionDate; // properties.date, which is the submission date if the class list contains "completion" and "date"
+        int[] dueDate; // properties.dueDate as Year, Month, Day, Hour, Minute, Second, or null if there is no due date
+        boolean isCompletion, hasDate; // Whether the class list contains "completion" and "date"
+        Long childSubmitted; // The first submission date found in this entity's child entities
+    }
+    
+    private static final String[] DUE_DATE_FIELDS = { "Year", "Month", "Day", "Hour", "Minute", "Second" };
+    
+    private final Reader reader;
+    private final Listener listener;
+    private final char[] buffer = new char[8192]; // Characters read from the stream that haven't been parsed yet
+    private int position, limit; // The next character to parse in buffer, and the number of characters in buffer
+    private final StringBuilder text = new StringBuilder(); // Reused for reading strings and numbers
+    
+    private SequenceParser(InputStream stream, Listener listener) {
+        this.reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        this.listener = listener;
+    }
+    
+    /*
+        @stream The response body of the sequences endpoint
+        @listener Called with each assignment that has a due date, in the order each assignment's entity ends
+        @return The number of assignments that were found
+    */
+    public static int parse(InputStream stream, Listener listener) throws IOException {
+        var counter = new int[1];
+        var parser = new SequenceParser(stream, (title, deadline, submitted) -> {
+            counter[0]++;
+            listener.onAssignment(title, deadline, submitted);
+        });
+        
+        if (parser.next() != '{')
+            throw new IOException("Expected the sequences response to be a JSON object");
+        
+        parser.parseEntity();
+        return counter[0];
+    }
+    
+    /*
+        Reads an entity object whose opening brace has already been read, and the child entities inside it.
+        
+        @return The submission date of this entity, or of the first of its child entities that has one. Returns null if none was found.
+    */
+    private Long parseEntity() throws IOException {
+        var entity = new Entity();
+        int c = next();
+        
+        while (c != '}') {
+            if (c != '"')
+                throw error("Expected a key");
+            
+            String key = readString();
+            expect(':');
+            c = next();
+            
+            if (key.equals("properties") && c == '{')
+                parseProperties(entity);
+            else if (key.equals("class") && c == '[')
+                parseClass(entity);
+            else if (key.equals("entities") && c == '[')
+                parseChildren(entity);
+            else
+                skipValue(c);
+            
+            c = next();
+            
+            if (c == ',')
+                c = next();
+        }
+        
+        Long submitted = entity.childSubmitted;
+        
+        // An entity with both the "completion" and "date" classes holds the submission date itself, which takes priority over its children
+        if (entity.isCompletion && entity.hasDate && entity.completionDate != null)
+            submitted = Schedule.timestampToEpoch(entity.completionDate, "yyyy-MM-dd'T'HH:mm:ss", false);
+        
+        if (entity.dueDate != null && entity.title != null) {
+            int[] due = entity.dueDate;
+            listener.onAssignment(entity.title, Schedule.dueDateToEpoch(due[0], due[1], due[2], due[3], due[4], due[5]), submitted);
+        }
+        
+        return submitted;
+    }
+    
+    // Reads the properties object of an entity, whose opening brace has already been read
+    private void parseProperties(Entity entity) throws IOException {
+        int c = next();
+        
+        while (c != '}') {
+            if (c != '"')
+                throw error("Expected a key");
+            
+            String key = readString();
+            expect(':');
+            c = next();
+            
+            if (key.equals("title") && c == '"')
+                entity.title = readString();
+            else if (key.equals("date") && c == '"')
+                entity.completionDate = readString();
+            else if (key.equals("dueDate") && c == '{')
+                entity.dueDate = parseDueDate();
+            else
+                skipValue(c);
+            
+            c = next();
+            
+            if (c == ',')
+                c = next();
+        }
+    }
+    
+    // @return The Year, Month, Day, Hour, Minute and Second fields of a dueDate object, whose opening brace has already been read
+    private int[] parseDueDate() throws IOException {
+        var fields = new int[DUE_DATE_FIELDS.length];
+        int c = next();
+        
+        while (c != '}') {
+            if (c != '"')
+                throw error("Expected a key");
+            
+            String key = readString();
+            expect(':');
+            c = next();
+            
+            int index = -1;
+            
+            for (int i = 0; i < DUE_DATE_FIELDS.length; i++) {
+                if (DUE_DATE_FIELDS[i].equals(key))
+                    index = i;
+            }
+            
+            if (index >= 0 && (c == '-' || (c >= '0' && c <= '9')))
+                fields[index] = (int)readNumber(c);
+            else
+                skipValue(c);
+            
+            c = next();
+            
+            if (c == ',')
+                c = next();
+        }
+        
+        return fields;
+    }
+    
+    // Reads the class list of an entity, whose opening bracket has already been read
+    private void parseClass(Entity entity) throws IOException {
+        int c = next();
+        
+        while (c != ']') {
+            if (c == '"') {
+                String type = readString();
+                
+                if (type.equals("completion"))
+                    entity.isCompletion = true;
+                
+                if (type.equals("date"))
+                    entity.hasDate = true;
+            }
+            else
+                skipValue(c);
+            
+            c = next();
+            
+            if (c == ',')
+                c = next();
+        }
+    }
+    
+    // Reads the child entities of an entity, whose opening bracket has already been read
+    private void parseChildren(Entity parent) throws IOException {
+        int c = next();
+        
+        while (c != ']') {
+            if (c == '{') {
+                Long submitted = parseEntity();
+                
+                // Like Schedule.getSubmittedDate, the first child with a submission date wins
+                if (parent.childSubmitted == null)
+                    parent.childSubmitted = submitted;
+            }
+            else
+                skipValue(c);
+            
+            c = next();
+            
+            if (c == ',')
+                c = next();
+        }
+    }
+    
+    /*
+        Skips over a value without storing it.
+        
+        @first The first character of the value, which has already been read
+    */
+    private void skipValue(int first) throws IOException {
+        if (first == -1)
+            throw error("Unexpected end of the response");
+        
+        if (first == '"') {
+            skipString();
+            return;
+        }
+        
+        if (first != '{' && first != '[') {
+            // Numbers, true, false and null end at the next delimiter, which is left for the caller to read
+            while (position < limit || fill()) {
+                char c = buffer[position];
+                
+                if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+                    return;
+                
+                position++;
+            }
+            
+            return;
+        }
+        
+        int depth = 1;
+        
+        // Count brackets until the object or array is closed, skipping over any strings because they may contain brackets
+        while (depth > 0) {
+            int c = read();
+            
+            if (c == -1)
+                throw error("Unexpected end of the response");
+            
+            if (c == '"')
+                skipString();
+            else if (c == '{' || c == '[')
+                depth++;
+            else if (c == '}' || c == ']')
+                depth--;
+        }
+    }
+    
+    // @return The contents of a string whose opening quote has already been read
+    private String readString() throws IOException {
+        text.setLength(0);
+        
+        while (true) {
+            int c = read();
+            
+            if (c == -1)
+                throw error("Unterminated string");
+            
+            if (c == '"')
+                return text.toString();
+            
+            if (c != '\\') {
+                text.append((char)c);
+                continue;
+            }
+            
+            c = read();
+            
+            switch (c) {
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'u' -> {
+                    int code = 0;
+                    
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        
+                        if (digit < 0)
+                            throw error("Invalid unicode escape");
+                        
+                        code = code * 16 + digit;
+                    }
+                    
+                    text.append((char)code);
+                }
+                case -1 -> throw error("Unterminated string");
+                default -> text.append((char)c);
+            }
+        }
+    }
+    
+    // Skips a string whose opening quote has already been read
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            
+            if (c == -1)
+                throw error("Unterminated string");
+            
+            if (c == '\\')
+                read();
+            else if (c == '"')
+                return;
+        }
+    }
+    
+    /*
+        @first The first character of the number, which has already been read
+        @return The number, with any fraction dropped
+    */
+    private long readNumber(int first) throws IOException {
+        text.setLength(0);
+        text.append((char)first);
+        
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            
+            if (c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E' && (c < '0' || c > '9'))
+                break;
+            
+            text.append(c);
+            position++;
+        }
+        
+        try {
+            return (long)Double.parseDouble(text.toString());
+        } catch (NumberFormatException ex) {
+            throw error("Invalid number");
+        }
+    }
+    
+    // @expected The next non whitespace character that must follow
+    private void expect(char expected) throws IOException {
+        if (next() != expected)
+            throw error("Expected '" + expected + "'");
+    }
+    
+    // @return The next character that isn't whitespace, or -1 at the end of the stream
+    private int next() throws IOException {
+        int c;
+        
+        do {
+            c = read();
+        } while (c != -1 && Character.isWhitespace(c));
+        
+        return c;
+    }
+    
+    // @return The next character, or -1 at the end of the stream
+    private int read() throws IOException {
+        if (position >= limit && !fill())
+            return -1;
+        
+        return buffer[position++];
+    }
+    
+    // @return True if more characters were read into the buffer, false at the end of the stream
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        
+        return true;
+    }
+    
+    private IOException error(String message) {
+        return new IOException(message + " in the sequences response");
+    }
+}
@@ -0,0 +1,65 @@
+package com.mycompany.semesterproject;
+
+// Tunable values are read from JVM system properties, Example: java -Delearn.maxConcurrentRequests=4 -jar SemesterProject.jar
+public class Settings {
+    /*
+        @key The name of the system property to read
+        @defaultValue The value to use if the property is not set or is not a valid number
+        @return The integer value of the property
+    */
+    public static int getInt(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        
+        if (value == null)
+            return defaultValue;
+        
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            System.out.printf("Warning! Ignoring invalid value \"%s\" for %s%n", value, key);
+            return defaultValue;
+        }
+    }
+    
+    /*
+        @key The name of the system property to read
+        @defaultValue The value to use if the property is not set or is not a valid number
+        @return The long value of the property
+    */
+    public static long getLong(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        
+        if (value == null)
+            return defaultValue;
+        
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            System.out.printf("Warning! Ignoring invalid value \"%s\" for %s%n", value, key);
+            return defaultValue;
+        }
+    }
+    
+    /*
+        @key The name of the system property to read
+        @defaultValue The value to use if the property is not set
+        @return The boolean value of the property
+    */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        
+        if (value == null)
+            return defaultValue;
+        
+        return Boolean.parseBoolean(value.trim());
+    }
+    
+    /*
+        @key The name of the system property to read
+        @defaultValue The value to use if the property is not set
+        @return The string value of the property
+    */
+    public static String getString(String key, String defaultValue) {
+        return System.getProperty(key, defaultValue);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mycompany.semesterproject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.List;
+
+/*
+    The last successful Deadlines, Grades and Calendar downloads, saved in a compact binary file next to the session file.
+    The next launch shows them right away, marked with when they were downloaded, while the live data downloads in the background.
+    
+    The file is a magic number and version, then for each kind of data: the kind's ordinal followed by the Dataset as written by Dataset.write.
+*/
+public class Snapshot {
+    private static final int MAGIC = 0x454C5353; // "ELSS"
+    private static final int VERSION = 1;
+    
+    // The kinds of data that are saved. Grades are always saved sorted by date
+    public enum Kind { DEADLINES, GRADES, CALENDAR }
+    
+    private final Path path;
+    private final EnumMap<Kind, Dataset> datasets = new EnumMap<>(Kind.class);
+    
+    private Snapshot(Path path) {
+        this.path = path;
+    }
+    
+    /*
+        @sessionFilename The file name the student's session cookie is stored in. The snapshot is stored next to it.
+        @return The path of the snapshot file for the session
+    */
+    public static Path getPath(String sessionFilename) {
+        Path session = Path.of(sessionFilename).toAbsolutePath();
+        return session.resolveSibling(session.getFileName() + ".snapshot");
+    }
+    
+    /*
+        @path The path of the snapshot file
+        @return The saved snapshot. It is empty if the file does not exist or could not be read
+    */
+    public static Snapshot load(Path path) {
+        var snapshot = new Snapshot(path);
+        
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return snapshot;
+            
+            int ordinal;
+            
+            while ((ordinal = input.read()) != -1) {
+                if (ordinal >= Kind.values().length)
+                    break;
+                
+                snapshot.datasets.put(Kind.values()[ordinal], Dataset.read(input));
+            }
+        } catch (EOFException ex) {
+            // A file cut short by a crash keeps the datasets that were read completely
+        } catch (IOException ex) {
+            snapshot.datasets.clear();
+        }
+        
+        return snapshot;
+    }
+    
+    /*
+        @kind The kind of data
+        @courses The courses the student currently has selected
+        @return The saved data, or null if there is none or it was saved for different courses
+    */
+    public synchronized Dataset get(Kind kind, List<Course> courses) {
+        Dataset dataset = datasets.get(kind);
+        return dataset != null && dataset.isFor(courses) ? dataset : null;
+    }
+    
+    /*
+        Replaces the saved data of one kind and writes the snapshot file.
+        
+        @kind The kind of data
+        @dataset A download where every course succeeded
+    */
+    public synchronized void put(Kind kind, Dataset dataset) {
+        datasets.put(kind, dataset);
+        
+        // Write to a temporary file first, so a crash while writing never leaves a broken snapshot behind
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        
+        try {
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                
+                for (var entry : datasets.entrySet()) {
+                    output.write(entry.getKey().ordinal());
+                    entry.getValue().write(output);
+                }
+            }
+            
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            System.out.println("Warning! Failed to save the offline snapshot");
+        }
+    }
+}
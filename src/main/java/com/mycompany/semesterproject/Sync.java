@@ -0,0 +1,378 @@
+package com.mycompany.semesterproject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+    Downloads the deadlines, grades and calendar events of each course and reports only what changed since the last sync.
+    
+    The last seen state of every course is saved in sync-<userId>.json next to the session file. For each course and kind of data
+    it keeps a hash of the response, and for grades the latest LastModified as a watermark, along with every item's times.
+    A response whose hash didn't change is not parsed at all, so polling costs little more than the conditional requests when nothing
+    changed. A 304 Not Modified is still hashed, because the response cache is shared with the menus and only says the body is the same
+    as the one it last stored, which may be newer than the last sync.
+*/
+public class Sync {
+    // The results of one sync
+    public static class Result {
+        public final List<Change> changes = Collections.synchronizedList(new ArrayList<>()); // Every change, in the order the courses finished
+        public final AtomicInteger skippedCourses = new AtomicInteger(); // Courses where nothing had changed
+        public final AtomicInteger newCourses = new AtomicInteger(); // Courses seen for the first time. Their items are recorded but not reported as changes
+        public final AtomicInteger failedCourses = new AtomicInteger(); // Courses where at least one kind of data could not be downloaded
+    }
+    
+    // The three kinds of data, with the name they are saved under and the kind reported in each change
+    private enum Feed {
+        ASSIGNMENTS("assignments", "deadline"),
+        GRADES("grades", "grade"),
+        CALENDAR("calendar", "event");
+        
+        final String key, kind;
+        
+        Feed(String key, String kind) {
+            this.key = key;
+            this.kind = kind;
+        }
+    }
+    
+    // What one course's response for one kind of data turned out to be
+    private enum Outcome { UNCHANGED, CHANGED, NEW, FAILED }
+    
+    // One item in a response
+    private static class Item {
+        final String title;
+        final long[] values; // The times and grade that are compared between syncs. See parse
+        
+        Item(String title, long... values) {
+            this.title = title;
+            this.values = values;
+        }
+    }
+    
+    /*
+        @sessionFilename The file name the student's session cookie is stored in. The sync state is stored next to it.
+        @userId The student's numerical ID on d2l
+        @return The path of the sync state file for the student
+    */
+    public static Path getPath(String sessionFilename, String userId) {
+        return Path.of(sessionFilename).toAbsolutePath().resolveSibling("sync-" + userId + ".json");
+    }
+    
+    /*
+        @elearn The student's logged in and authorized session
+        @courses The courses to sync
+        @statePath The path of the sync state file. It is read at the start and written at the end
+        @return The changes since the last sync
+    */
+    public static Result run(eLearn elearn, List<Course> courses, Path statePath) {
+        JSONObject state = load(statePath);
+        JSONObject courseStates = state.getJSONObject("courses");
+        var result = new Result();
+        var pending = new ArrayList<CompletableFuture<Void>>();
+        String token = elearn.auth.token;
+        
+        for (Course course : courses) {
+            JSONObject courseState = courseStates.optJSONObject(course.id);
+            
+            if (courseState == null) {
+                courseState = new JSONObject();
+                courseStates.put(course.id, courseState);
+            }
+            
+            JSONObject saved = courseState;
+            
+            // Every kind of data for every course is requested at the same time
+            var feeds = List.of(
+                sync(course, Feed.ASSIGNMENTS, Queries.getAssignmentsUrl(course.id), token, saved, result),
+                sync(course, Feed.GRADES, Queries.getGradesUrl(course.id, elearn.auth.userId), token, saved, result),
+                sync(course, Feed.CALENDAR, Queries.getEventsUrl(course.id), token, saved, result)
+            );
+            
+            pending.add(CompletableFuture.allOf(feeds.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+                var outcomes = feeds.stream().map(CompletableFuture::join).toList();
+                
+                if (outcomes.contains(Outcome.FAILED))
+                    result.failedCourses.incrementAndGet();
+                else if (outcomes.contains(Outcome.NEW))
+                    result.newCourses.incrementAndGet();
+                else if (!outcomes.contains(Outcome.CHANGED))
+                    result.skippedCourses.incrementAndGet();
+            }));
+        }
+        
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        
+        state.put("savedAt", System.currentTimeMillis());
+        save(statePath, state);
+        
+        return result;
+    }
+    
+    /*
+        @course The course to sync
+        @feed The kind of data to sync
+        @url The url of the API endpoint for the kind of data
+        @token The API access token
+        @courseState The saved state of the course. The feed's entry is replaced if the response changed
+        @result Receives the changes
+        @return A future that completes with what the response turned out to be
+    */
+    private static CompletableFuture<Outcome> sync(Course course, Feed feed, String url, String token, JSONObject courseState, Result result) {
+        return Networking.GetAsync(url, "Authorization", "Bearer " + token).thenApplyAsync(response -> {
+            if (response == null || response.statusCode() != 200)
+                return Outcome.FAILED;
+            
+            JSONObject previous;
+            
+            synchronized (courseState) {
+                previous = courseState.optJSONObject(feed.key);
+            }
+            
+            String hash = hash(response.body());
+            
+            if (previous != null && hash.equals(previous.optString("hash")))
+                return Outcome.UNCHANGED;
+            
+            Map<String, Item> items;
+            
+            try {
+                items = parse(feed, response);
+            } catch (IOException | JSONException ex) {
+                return Outcome.FAILED;
+            }
+            
+            long watermark = getWatermark(feed, items);
+            var current = new JSONObject().put("hash", hash).put("watermark", watermark).put("items", toJSON(items));
+            
+            synchronized (courseState) {
+                courseState.put(feed.key, current);
+            }
+            
+            if (previous == null)
+                return Outcome.NEW;
+            
+            // Every grade change moves LastModified forward, so grades whose watermark and count are the same only differ in fields we don't track
+            if (feed == Feed.GRADES && previous.optLong("watermark") == watermark && previous.getJSONObject("items").length() == items.size())
+                return Outcome.UNCHANGED;
+            
+            var changes = new ArrayList<Change>();
+            diff(course, feed, previous.getJSONObject("items"), items, changes);
+            result.changes.addAll(changes);
+            
+            return changes.isEmpty() ? Outcome.UNCHANGED : Outcome.CHANGED;
+        }).exceptionally(ex -> Outcome.FAILED); // A malformed response or saved state only fails this course
+    }
+    
+    /*
+        Items are keyed by their ID when the API sends one, otherwise by their title. Repeated titles get "#2", "#3" and so on.
+        
+        @feed The kind of data in the response
+        @response A successful response
+        @return The items in the response and their values:
+            assignments: { deadline, submitted }
+            grades: { graded, grade * 10,000 }
+            calendar events: { end }
+    */
+    private static Map<String, Item> parse(Feed feed, HttpResponse<String> response) throws IOException {
+        var items = new LinkedHashMap<String, Item>();
+        var titles = new HashMap<String, Integer>();
+        
+        switch (feed) {
+            case ASSIGNMENTS -> {
+                var body = new ByteArrayInputStream(response.body().getBytes(StandardCharsets.UTF_8));
+                
+                SequenceParser.parse(body, (title, deadline, submitted) ->
+                    items.put(uniqueKey(title, titles), new Item(title, deadline, submitted == null ? Assignment.NONE : submitted)));
+            }
+            case GRADES -> {
+                var grades = new JSONArray(response.body());
+                
+                for (int i = 0; i < grades.length(); i++) {
+                    var grade = grades.getJSONObject(i);
+                    String name = grade.getString("GradeObjectName");
+                    Long graded = Schedule.timestampToEpoch(grade.getString("LastModified"), "yyyy-MM-dd'T'HH:mm:ss", false);
+                    long gradeKey = (long)((grade.getDouble("PointsNumerator") / grade.getDouble("PointsDenominator")) * 10000); // Stored like Schedule.addGrades does
+                    String key = grade.has("GradeObjectIdentifier") ? "id:" + grade.get("GradeObjectIdentifier") : uniqueKey(name, titles);
+                    
+                    items.put(key, new Item(name, graded == null ? Assignment.NONE : graded, gradeKey));
+                }
+            }
+            case CALENDAR -> {
+                var events = new JSONArray(response.body());
+                
+                for (int i = 0; i < events.length(); i++) {
+                    var event = events.getJSONObject(i);
+                    
+                    if (!event.has("EndDateTime"))
+                        continue;
+                    
+                    Long end = Schedule.timestampToEpoch(event.getString("EndDateTime"), "yyyy-MM-dd'T'HH:mm:ss", false);
+                    String title = event.getString("Title");
+                    String key = event.has("CalendarEventId") ? "id:" + event.get("CalendarEventId") : uniqueKey(title, titles);
+                    
+                    items.put(key, new Item(title, end == null ? Assignment.NONE : end));
+                }
+            }
+        }
+        
+        return items;
+    }
+    
+    /*
+        Compares the saved items with the new ones and adds a change for every difference.
+        
+        @previous The saved items, as written by toJSON
+        @current The items in the new response
+        @changes Receives the changes
+    */
+    private static void diff(Course course, Feed feed, JSONObject previous, Map<String, Item> current, List<Change> changes) {
+        current.forEach((key, item) -> {
+            String title = item.title;
+            long[] values = item.values;
+            JSONArray old = previous.optJSONArray(key);
+            
+            if (old == null) {
+                changes.add(new Change(course, feed.kind, "added", title, JSONObject.NULL, describe(feed, values)));
+                return;
+            }
+            
+            long[] oldValues = toValues(old);
+            
+            switch (feed) {
+                case ASSIGNMENTS -> {
+                    if (oldValues[0] != values[0])
+                        changes.add(new Change(course, feed.kind, "moved", title, toISO(oldValues[0]), toISO(values[0])));
+                    
+                    if (oldValues[1] != values[1])
+                        changes.add(new Change(course, feed.kind, values[1] == Assignment.NONE ? "unsubmitted" : "submitted", title, toISO(oldValues[1]), toISO(values[1])));
+                }
+                case GRADES -> {
+                    if (oldValues[1] != values[1])
+                        changes.add(new Change(course, feed.kind, "changed", title, describe(feed, oldValues), describe(feed, values)));
+                }
+                case CALENDAR -> {
+                    if (oldValues[0] != values[0])
+                        changes.add(new Change(course, feed.kind, "moved", title, toISO(oldValues[0]), toISO(values[0])));
+                }
+            }
+        });
+        
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                JSONArray old = previous.getJSONArray(key);
+                changes.add(new Change(course, feed.kind, "removed", old.optString(old.length() - 1), describe(feed, toValues(old)), JSONObject.NULL));
+            }
+        }
+    }
+    
+    // @return The value reported for an item: the deadline or end time, or the grade as a fraction
+    private static Object describe(Feed feed, long[] values) {
+        return feed == Feed.GRADES ? (Object)(values[1] / 10000.0) : toISO(values[0]);
+    }
+    
+    // @return The newest LastModified of the grades, or 0 for the other kinds of data
+    private static long getWatermark(Feed feed, Map<String, Item> items) {
+        long watermark = 0;
+        
+        if (feed == Feed.GRADES) {
+            for (Item item : items.values())
+                watermark = Math.max(watermark, item.values[0]);
+        }
+        
+        return watermark;
+    }
+    
+    // @return The key for an item, with "#2", "#3" and so on added when a title repeats
+    private static String uniqueKey(String title, Map<String, Integer> titles) {
+        int count = titles.merge(title, 1, Integer::sum);
+        return count == 1 ? title : title + "#" + count;
+    }
+    
+    // @return The items as a JSON object with an array of each item's values followed by its title
+    private static JSONObject toJSON(Map<String, Item> items) {
+        var json = new JSONObject();
+        
+        items.forEach((key, item) -> {
+            var array = new JSONArray();
+            
+            for (long value : item.values)
+                array.put(value);
+            
+            json.put(key, array.put(item.title));
+        });
+        
+        return json;
+    }
+    
+    // @return The values of a saved item, without its title
+    private static long[] toValues(JSONArray array) {
+        int count = array.length() - 1;
+        long[] values = new long[count];
+        
+        for (int i = 0; i < count; i++)
+            values[i] = array.getLong(i);
+        
+        return values;
+    }
+    
+    // @return The epoch as an ISO-8601 UTC timestamp, or JSONObject.NULL for Assignment.NONE
+    private static Object toISO(long epoch) {
+        return epoch == Assignment.NONE ? JSONObject.NULL : Instant.ofEpochMilli(epoch).toString();
+    }
+    
+    // @return The SHA-256 of the response body in hex
+    private static String hash(String body) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // Every JVM is required to support SHA-256
+        }
+    }
+    
+    // @return The saved sync state, or an empty one if the file does not exist or could not be read
+    private static JSONObject load(Path path) {
+        try {
+            var state = new JSONObject(Files.readString(path));
+            
+            if (state.optJSONObject("courses") != null)
+                return state;
+        } catch (IOException | JSONException ex) {
+            // Start over with an empty state
+        }
+        
+        return new JSONObject().put("courses", new JSONObject());
+    }
+    
+    private static void save(Path path, JSONObject state) {
+        // A state file cut short by a crash would lose every watermark, and the next sync would report every item as new
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        
+        try {
+            Files.writeString(temporary, state.toString());
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            System.out.println("Warning! Failed to save the sync state");
+        }
+    }
+}
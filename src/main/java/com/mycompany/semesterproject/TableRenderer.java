@@ -0,0 +1,192 @@
+package com.mycompany.semesterproject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Draws the bordered tables of the Deadlines, Grades and Calendar menus. Each column is as wide as its longest cell, up to its max width, and
+    the widths are found while the rows are added, so the rows are only walked once more when they are written. Cells longer than their column
+    are cut off with "..." as they are written, without making a shorter copy of the text.
+    
+    The whole table is written into one buffered writer, so even a table with thousands of rows reaches the terminal in a few large writes.
+    If elearn.table.pageRows is set, the table stops after that many rows and waits for Enter before writing the next page.
+*/
+public class TableRenderer {
+    // One column of the table
+    public static class Column {
+        final String header;
+        final int maxWidth; // Longer cells are cut off with "..."
+        int width; // The width of the longest cell or the header, up to maxWidth
+        
+        /*
+            @header The column's name, centered in the header row
+            @maxWidth The widest the column can be. It must be at least 3 so "..." fits
+        */
+        public Column(String header, int maxWidth) {
+            this.header = header;
+            this.maxWidth = maxWidth;
+            this.width = Math.min(header.length(), maxWidth);
+        }
+    }
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final char[] SPACES = new char[256];
+    private static final char[] DASHES = new char[1024];
+    
+    static {
+        Arrays.fill(SPACES, ' ');
+        Arrays.fill(DASHES, '-');
+    }
+    
+    private final String title;
+    private final Column[] columns;
+    private final List<String[]> rows = new ArrayList<>();
+    
+    /*
+        @title The name shown above the header row
+        @columns The table's columns, from left to right
+    */
+    public TableRenderer(String title, Column... columns) {
+        this.title = title;
+        this.columns = columns;
+    }
+    
+    // @cells One cell for each column. The cells are kept as they are and only cut off when they are written
+    public void addRow(String... cells) {
+        for (int i = 0; i < columns.length; i++) {
+            Column column = columns[i];
+            
+            if (cells[i].length() > column.width)
+                column.width = Math.min(cells[i].length(), column.maxWidth);
+        }
+        
+        rows.add(cells);
+    }
+    
+    // @return The number of rows added
+    public int size() {
+        return rows.size();
+    }
+    
+    // @return The number of rows in each page, or 0 if the table is never paged. It is read from elearn.table.pageRows
+    public static int getPageRows() {
+        return Math.max(0, Settings.getInt("elearn.table.pageRows", 0));
+    }
+    
+    /*
+        Writes the table to System.out and flushes it once, or once per page if the table is paged.
+        System.out is only wrapped, never closed, so the menus can keep printing after the table.
+    */
+    public void print() {
+        var out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), BUFFER_SIZE);
+        
+        try {
+            write(out, getPageRows());
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    /*
+        @out Where to write the table. It is only flushed before asking for the next page
+        @pageRows The number of rows in each page, or 0 to write every row at once
+    */
+    public void write(Writer out, int pageRows) throws IOException {
+        int tableWidth = 1;
+        
+        for (Column column : columns)
+            tableWidth += column.width + 3;
+        
+        writeBorder(out, tableWidth);
+        out.write('*');
+        writeCentered(out, title, tableWidth - 2);
+        out.write('*');
+        out.write(System.lineSeparator());
+        writeBorder(out, tableWidth);
+        
+        out.write('|');
+        
+        for (Column column : columns) {
+            out.write(' ');
+            writeCentered(out, column.header, column.width);
+            out.write(" |");
+        }
+        
+        out.write(System.lineSeparator());
+        writeBorder(out, tableWidth);
+        
+        for (int row = 0; row < rows.size(); row++) {
+            // Wait for the student after each full page, unless this is the last row
+            if (pageRows > 0 && row > 0 && row % pageRows == 0) {
+                out.flush();
+                
+                String answer = Console.getLine(String.format("-- Showing %d of %d rows. Press Enter for more, or q to stop --", row, rows.size()));
+                
+                if (answer.trim().equalsIgnoreCase("q"))
+                    break;
+            }
+            
+            writeRow(out, rows.get(row));
+        }
+        
+        writeBorder(out, tableWidth);
+        out.write(System.lineSeparator());
+    }
+    
+    private void writeRow(Writer out, String[] cells) throws IOException {
+        out.write('|');
+        
+        for (int i = 0; i < columns.length; i++) {
+            int width = columns[i].width;
+            String cell = cells[i];
+            
+            out.write(' ');
+            
+            // Cut off the cell if it's too long, by writing only the start of it
+            if (cell.length() > width) {
+                out.write(cell, 0, width - 3);
+                out.write("...");
+            }
+            else {
+                out.write(cell);
+                writeRepeated(out, SPACES, width - cell.length());
+            }
+            
+            out.write(" |");
+        }
+        
+        out.write(System.lineSeparator());
+    }
+    
+    private static void writeBorder(Writer out, int width) throws IOException {
+        writeRepeated(out, DASHES, width);
+        out.write(System.lineSeparator());
+    }
+    
+    // Writes the text in the middle of the width, cut off if it doesn't fit
+    private static void writeCentered(Writer out, String text, int width) throws IOException {
+        int length = Math.min(text.length(), width);
+        int left = (width - length) / 2;
+        
+        writeRepeated(out, SPACES, left);
+        out.write(text, 0, length);
+        writeRepeated(out, SPACES, width - length - left);
+    }
+    
+    // Writes count characters from a buffer filled with the same character
+    private static void writeRepeated(Writer out, char[] filled, int count) throws IOException {
+        while (count > 0) {
+            int chunk = Math.min(count, filled.length);
+            out.write(filled, 0, chunk);
+            count -= chunk;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.mycompany.semesterproject;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.mycompany.semesterproject.Traverse")
+@Label("Schedule Traversal")
+@Description("Walking one course's parsed JSON and adding its items to a schedule")
+@Category({"eLearn", "Phase"})
+@StackTrace(false)
+class TraverseEvent extends PhaseEvent {
+    @Label("Items")
+    int items;
+}
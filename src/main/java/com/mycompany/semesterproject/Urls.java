@@ -0,0 +1,51 @@
+package com.mycompany.semesterproject;
+
+import java.net.URI;
+
+/*
+    The base urls of eLearn and of the Brightspace API services, so the program can be pointed at another school or at a local stand-in server.
+    elearn.baseUrl is the eLearn site, Example: -Delearn.baseUrl=http://localhost:8080
+    elearn.apiUrl is the API url with {service} where the service's name goes, Example: -Delearn.apiUrl=http://localhost:8080/api/{service}
+*/
+public class Urls {
+    private static final String[] SERVICES = { "sequences", "enrollments", "organizations" };
+    private static final String BASE = trimSlash(Settings.getString("elearn.baseUrl", "https://elearn.volstate.edu"));
+    private static final String API = trimSlash(Settings.getString("elearn.apiUrl", "https://cfd2be83-bc1c-4a43-8ac3-469bc19bfc4a.{service}.api.brightspace.com"));
+    
+    /*
+        @path The path on the eLearn site, starting with "/"
+        @return The url of the path on the eLearn site
+    */
+    public static String elearn(String path) {
+        return BASE + path;
+    }
+    
+    /*
+        @service The API service, such as "sequences", "enrollments" or "organizations"
+        @path The path on the service, starting with "/"
+        @return The url of the path on the API service
+    */
+    public static String api(String service, String path) {
+        return API.replace("{service}", service) + path;
+    }
+    
+    /*
+        @uri The url of a request
+        @return The API service the url belongs to, or null if it isn't on an API service
+    */
+    public static String serviceOf(URI uri) {
+        String url = uri.toString();
+        
+        for (String service : SERVICES) {
+            if (url.startsWith(api(service, "/")))
+                return service;
+        }
+        
+        return null;
+    }
+    
+    // The urls are joined to paths that start with "/", so a trailing "/" in the setting would double it
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
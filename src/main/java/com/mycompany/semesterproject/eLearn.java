@@ -6,12 +6,18 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 class Authorization {
@@ -30,6 +36,57 @@ class Authorization {
     public boolean isExpired() {
         return (System.currentTimeMillis() / 1000) >= this.expiresAtSeconds;
     }
+    
+    /*
+        @marginSeconds How long before the expiration a new token should be requested
+        @return The time in milliseconds when the token should be refreshed
+    */
+    public long getRefreshAtMillis(long marginSeconds) {
+        // A token that lives shorter than twice the margin is refreshed halfway through its life instead
+        long now = System.currentTimeMillis();
+        long expiresAtMillis = this.expiresAtSeconds * 1000;
+        
+        return Math.max(expiresAtMillis - marginSeconds * 1000, now + (expiresAtMillis - now) / 2);
+    }
+    
+    /*
+        @sessionFilename The file name the student's session cookie is stored in. The authorization is stored next to it.
+        @return The path of the authorization file for the session
+    */
+    public static Path getPath(String sessionFilename) {
+        Path session = Path.of(sessionFilename).toAbsolutePath();
+        return session.resolveSibling(session.getFileName() + ".auth.json");
+    }
+    
+    /*
+        @path The path of the authorization file
+        @return The saved authorization, or null if the file does not exist, could not be read, or the token is expired
+    */
+    public static Authorization load(Path path) {
+        try {
+            var json = new JSONObject(Files.readString(path));
+            var auth = new Authorization(json.getLong("expires_at"), json.getString("token"), json.optString("csrfToken", null), json.getString("userId"));
+            
+            return auth.isExpired() ? null : auth;
+        } catch (IOException | JSONException ex) {
+            return null;
+        }
+    }
+    
+    // @path The path of the authorization file to write
+    public void save(Path path) {
+        var json = new JSONObject();
+        json.put("expires_at", expiresAtSeconds);
+        json.put("token", token);
+        json.put("csrfToken", csrfToken);
+        json.put("userId", userId);
+        
+        try {
+            Files.writeString(path, json.toString());
+        } catch (IOException ex) {
+            System.out.println("Warning! Failed to save the authorization token");
+        }
+    }
 }
 
 class Course {
@@ -63,11 +120,33 @@ class Courses extends Menu {
 }
 
 public class eLearn extends Menu {
+    private static final int MAX_ENROLLMENT_PAGES = 100; // The most pages of enrollments followed, which is 2000 enrollments at 20 per page
+    
+    // Checks whether saved courses are still current. It has its own thread because the check waits on the network, which would starve the common pool
+    private static final ExecutorService courseRefresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "course-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Requests new tokens. Requesting one waits on the network too, and the batch engine may refresh many accounts' tokens at once
+    private static final ExecutorService tokenRefresher = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
     private String sessionFilename;
     private String cookie;
-    protected Authorization auth; 
+    protected volatile Authorization auth; // Replaced as a whole when the token is refreshed, so readers always see a matching token and user ID
+    private final AtomicReference<CompletableFuture<Boolean>> refreshing = new AtomicReference<>(); // The token refresh in flight, shared by every caller
+    private Snapshot snapshot; // The offline copy of the last downloads, or null if it hasn't been read yet
+    private HistoryStore history; // Every item downloaded for this session, or null if it hasn't been opened yet
+    private boolean historyFailed; // True if the history couldn't be opened, so it isn't tried again
+    private volatile long retryRefreshAt; // After a failed background refresh, another one is not started before this time in milliseconds
     private Menu deadlines, grades, calendar, courseSelector;
-    protected ArrayList<Course> courses;
+    protected volatile ArrayList<Course> courses;
+    private volatile boolean allCoursesSelected; // True if the student selected "All Courses", so a refreshed course list can replace this.courses
     
     // @sessionFilename This will be the file name used for when the student's session cookie is stored to disk.
     public eLearn(String sessionFilename) {
@@ -88,7 +167,10 @@ public class eLearn extends Menu {
     public void processMenu() {
         int option;
         
-        if (getCourses()) {        
+        // Show each course as it loads so the student isn't left waiting on a blank screen
+        if (getCourses(course -> System.out.println("Loaded " + course.name))) {
+            System.out.println();
+            
             this.courseSelector = new Courses(this.courses);
             
             this.courseSelector.displayMenu();
@@ -102,6 +184,8 @@ public class eLearn extends Menu {
                 this.courses.clear();
                 this.courses.add(selectedCourse);
             }
+            else
+                this.allCoursesSelected = true;
         }
         
         // After the student selects their course(s), then they will be asked again whether they want to view Grades, Deadlines, Calendar, or Exit
@@ -136,15 +220,21 @@ public class eLearn extends Menu {
         } catch (IOException ex) {
             return false;
         }
+        
+        // The session file is empty
+        if (sessionCookie == null)
+            return false;
 
         // The session cookie was read from disk and stored in sessionCookie. Now we need to verify that it isn't expired by doing a GET request to any url that needs a valid cookie
-        HttpResponse<String> response = Networking.Get("https://elearn.volstate.edu/d2l/lp/profile/profile_edit.d2l", "Cookie", sessionCookie);
+        HttpResponse<String> response = Networking.Get(Urls.elearn("/d2l/lp/profile/profile_edit.d2l"), "Cookie", sessionCookie);
 
-        var headers = response.headers().map();
-        var location = headers.get("Location");
+        if (response == null)
+            return false;
+        
+        var location = response.headers().firstValue("Location");
 
         // If the response does not try to redirect me or the redirection url does not contain "sessionExpired" then the cookie is good
-        if (location.isEmpty() || !location.get(0).contains("sessionExpired")) {
+        if (location.isEmpty() || !location.get().contains("sessionExpired")) {
             cookie = sessionCookie;
             return true;
         }         
@@ -163,136 +253,492 @@ public class eLearn extends Menu {
         } catch (IOException e) {
         System.out.println("Failed to save session");
       }
+      
+      // A token saved for the previous session must not be used with the new one
+      try {
+          Files.deleteIfExists(Authorization.getPath(sessionFilename));
+      } catch (IOException ex) {
+          // The saved token will be replaced on the next authorization anyway
+      }
+      
+      this.auth = null;
+      
+      // The same goes for the offline snapshot, since it may belong to a different student
+      synchronized (this) {
+          try {
+              Files.deleteIfExists(Snapshot.getPath(sessionFilename));
+          } catch (IOException ex) {
+              // It is overwritten by the next download anyway
+          }
+          
+          this.snapshot = null;
+          this.history = null; // The history is kept, but the new login may be a different student
+      }
+    }
+    
+    /*
+        The student must be authorized, since the history is stored per user ID.
+        
+        @return Every item downloaded for the student, or null if elearn.history.enabled is false or the history couldn't be opened
+    */
+    synchronized HistoryStore getHistory() {
+        if (this.history == null && !this.historyFailed && this.auth != null && Settings.getBoolean("elearn.history.enabled", true)) {
+            try {
+                this.history = HistoryStore.open(HistoryStore.getPath(sessionFilename, this.auth.userId));
+            } catch (IOException ex) {
+                System.out.println("Warning! Failed to open the history: " + ex.getMessage());
+                this.historyFailed = true;
+            }
+        }
+        
+        return this.history;
+    }
+    
+    // @return The offline copy of the last Deadlines, Grades and Calendar downloads for this session
+    synchronized Snapshot getSnapshot() {
+        if (this.snapshot == null)
+            this.snapshot = Snapshot.load(Snapshot.getPath(sessionFilename));
+        
+        return this.snapshot;
     }
     
     /*
-        @return Returns true if it successfully re-authorized the student through the API and stored the new access token.
+        The token is saved next to the session file, so it is reused across launches, and it is refreshed in the background shortly
+        before it expires. Callers only wait for a refresh when there is no valid token at all, and concurrent callers share it.
+        
+        @return Returns true if the student has a valid access token in this.auth.
     */
     protected boolean Authorize() {
-        // If auth is already set and it isn't expired, then we don't need to re-authorize, so return true.
-        if (this.auth != null && !this.auth.isExpired())
-            return true;
+        var event = Profiling.begin(new AuthorizeEvent());
+        event.authorized = authorize();
+        event.commit();
         
-        // Make a GET request to the home page with the student's cookie
-        String homepage = Networking.getBody("https://elearn.volstate.edu/d2l/home", "Cookie", this.cookie);
-
-        if (homepage == null)
-            return false;
-
-        // Do a regex search in the body of the homepage to find both the csrf token needed for API authorization, and the student's numeric D2L user ID
-        var regex = "'XSRF\\.Token'.*?'(.*?)'.*?'Session\\.UserId'.*?'(.*?)'";
-        Matcher matcher = Pattern.compile(regex).matcher(homepage);  
-
-        // If the regex find failed, then return false.
-        if (!matcher.find() || matcher.groupCount() != 2) {
+        return event.authorized;
+    }
+    
+    /*
+        Uses the token saved by a previous launch without checking the session or refreshing the token, for work that only needs the student's ID.
+        
+        @return True if a token that hasn't expired was saved
+    */
+    boolean loadSavedAuthorization() {
+        Authorization saved = Authorization.load(Authorization.getPath(sessionFilename));
+        
+        if (saved == null)
             return false;
+        
+        setAuthorization(saved);
+        return true;
+    }
+    
+    // @return True if this.auth holds a token that hasn't expired
+    private boolean authorize() {
+        // Use the token saved by a previous launch if it is still valid
+        if (this.auth == null) {
+            Authorization saved = Authorization.load(Authorization.getPath(sessionFilename));
+            
+            if (saved != null && this.auth == null) {
+                setAuthorization(saved);
+                scheduleRefresh(saved);
+            }
+        }
+        
+        Authorization current = this.auth;
+        
+        // If auth is already set and it isn't expired, then we don't need to wait, so return true.
+        if (current != null && !current.isExpired()) {
+            // The scheduled refresh can be late if the computer was asleep, so also start one here once the token is close to expiring
+            long now = System.currentTimeMillis();
+            
+            if (now >= current.getRefreshAtMillis(getRefreshMarginSeconds()) && now >= retryRefreshAt)
+                refreshAsync();
+            
+            return true;
+        }
+        
+        return refreshAsync().join();
+    }
+    
+    /*
+        Starts a token refresh, or joins the one that is already running.
+        
+        @return A future that completes with true if the new token was stored in this.auth
+    */
+    private CompletableFuture<Boolean> refreshAsync() {
+        var created = new CompletableFuture<Boolean>();
+        
+        // Only the caller that installs its future runs the refresh. Everyone else gets that same future
+        if (!refreshing.compareAndSet(null, created)) {
+            var running = refreshing.get();
+            
+            if (running != null)
+                return running;
+            
+            return refreshAsync(); // The refresh finished between the two calls, so try again
         }
+        
+        CompletableFuture.supplyAsync(this::requestAuthorization, tokenRefresher).whenComplete((auth, ex) -> {
+            if (auth != null) {
+                setAuthorization(auth);
+                auth.save(Authorization.getPath(sessionFilename));
+                scheduleRefresh(auth);
+            }
+            else
+                retryRefreshAt = System.currentTimeMillis() + 30_000;
+            
+            refreshing.set(null);
+            created.complete(auth != null);
+        });
+        
+        return created;
+    }
+    
+    // Stores a new token, and tells the response cache it belongs to the same student as the token it replaces
+    private void setAuthorization(Authorization auth) {
+        Authorization previous = this.auth;
+        this.auth = auth;
+        
+        Networking.setCacheIdentity("Bearer " + auth.token, "user:" + auth.userId, previous == null ? null : "Bearer " + previous.token);
+    }
+    
+    /*
+        Refreshes the token in the background shortly before it expires.
+        
+        @auth The token that was just stored in this.auth
+    */
+    private void scheduleRefresh(Authorization auth) {
+        long delay = Math.max(0, auth.getRefreshAtMillis(getRefreshMarginSeconds()) - System.currentTimeMillis());
+        
+        CompletableFuture.runAsync(() -> {
+            // Skip the refresh if the token was already replaced in the meantime
+            if (this.auth == auth)
+                refreshAsync();
+        }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, tokenRefresher));
+    }
+    
+    // @return How many seconds before the token expires it is refreshed, from elearn.auth.refreshMarginSeconds
+    private static long getRefreshMarginSeconds() {
+        return Settings.getLong("elearn.auth.refreshMarginSeconds", 300);
+    }
+    
+    /*
+        Requests a new access token with the student's cookie.
+        
+        @return The new authorization, or null if it could not be requested
+    */
+    private Authorization requestAuthorization() {
+        // Stream the home page with the student's cookie and stop downloading it as soon as both values are found
+        String[] values = Networking.streamAsync(Urls.elearn("/d2l/home"), HomepageScanner::scan, "Cookie", this.cookie).join();
+
+        // If the csrf token needed for API authorization or the student's numeric D2L user ID weren't found, then return null.
+        if (values == null)
+            return null;
 
-        // Extract the csrf token and user id from the regex search
-        String csrfToken = matcher.group(1);
-        String userId = matcher.group(2);
+        String csrfToken = values[0];
+        String userId = values[1];
 
         // Do a POST request to the API endpoint responsible for creating authorization access tokens
-        HttpResponse<String> oauth = Networking.Post("https://elearn.volstate.edu/d2l/lp/auth/oauth2/token", "scope=*:*:*", 
+        HttpResponse<String> oauth = Networking.Post(Urls.elearn("/d2l/lp/auth/oauth2/token"), "scope=*:*:*", 
             "Cookie", this.cookie, 
             "x-csrf-token", csrfToken,
             "Content-Type", "application/x-www-form-urlencoded"
         );
 
         if (oauth == null)
-            return false;
+            return null;
 
-        var json = new JSONObject(oauth.body());
+        try {
+            var json = new JSONObject(oauth.body());
 
-        // Get the access token and expiration of the token
-        var expires_at = json.getLong("expires_at");
-        String token = json.getString("access_token");
+            // Get the access token and expiration of the token
+            var expires_at = json.getLong("expires_at");
+            String token = json.getString("access_token");
 
-        // Store all the authorization data in this.auth
-        this.auth = new Authorization(expires_at, token, csrfToken, userId);
-        
-        return true;
+            return new Authorization(expires_at, token, csrfToken, userId);
+        } catch (JSONException ex) {
+            return null;
+        }
     }
     
     /*
+        @onCourse Called with each course as soon as it is resolved. It is only called when the courses have to be discovered through the API.
+        @return Returns true if it successfully stored the student's courses in this.courses, false otherwise.
+    */
+    boolean getCourses(Consumer<Course> onCourse) {
+        return getCourses(onCourse, true);
+    }
+    
+    /*
+        A batch run exits as soon as its queries finish, which would kill a background refresh before it saved anything,
+        so without background refreshes expired courses are discovered again before returning instead.
+        
+        @onCourse Called with each course as soon as it is resolved. It is only called when the courses have to be discovered through the API.
+        @refreshInBackground True to use the saved courses right away and check them in the background, false to refresh expired courses first
         @return Returns true if it successfully stored the student's courses in this.courses, false otherwise.
     */
-    private boolean getCourses() {
+    boolean getCourses(Consumer<Course> onCourse, boolean refreshInBackground) {
         // Make sure we are authorized
         if (!Authorize()) {
             System.out.println("Error: Failed to get authorization token");
             return false;
         }
         
-        // Clear any previously stored courses because we are about to get the latest
-        this.courses.clear();
+        Path cachePath = CourseCache.getPath(sessionFilename, auth.userId);
+        CourseCache cached = CourseCache.load(cachePath);
         
-        var coursesUrl = String.format(
-            "https://cfd2be83-bc1c-4a43-8ac3-469bc19bfc4a.enrollments.api.brightspace.com/users/%s?search=&pageSize=20&embedDepth=0&sort=current&parentOrganizations=&orgUnitTypeId=3&promotePins=true&roles=&excludeEnded=true&excludeIndirect=false", 
-            auth.userId
-        );
+        // If the courses were saved by a previous launch, use them right away and check whether they are still current in the background
+        if (cached != null && !cached.courses.isEmpty()) {
+            this.courses = cached.courses;
+            
+            if (refreshInBackground)
+                courseRefresher.execute(() -> refreshCourses(cached, cachePath));
+            else if (cached.isExpired(getCourseTtlMillis())) {
+                CourseCache discovered = discoverCourses(onCourse);
+                
+                // If the courses can't all be discovered right now, the saved ones are still better than failing the run or missing a course
+                if (discovered != null && discovered.isComplete()) {
+                    discovered.save(cachePath);
+                    this.courses = discovered.courses;
+                }
+            }
+            
+            return true;
+        }
+        
+        CourseCache discovered = discoverCourses(onCourse);
+        
+        if (discovered == null)
+            return false;
+        
+        // Some courses are better than none for now, but they aren't saved, so the next launch discovers them all again
+        if (discovered.isComplete())
+            discovered.save(cachePath);
+        
+        this.courses = discovered.courses;
+        
+        return true;
+    }
+    
+    /*
+        Runs course discovery again if the saved courses are older than the TTL or the student's number of enrollments changed.
+        
+        @cached The courses that were loaded from disk
+        @cachePath The path of the course cache file
+    */
+    private void refreshCourses(CourseCache cached, Path cachePath) {
+        // Counting the enrollments only needs the enrollments endpoint, which is much cheaper than resolving every course
+        if (!cached.isExpired(getCourseTtlMillis()) && countEnrollments() == cached.enrollmentCount)
+            return;
+        
+        CourseCache discovered = discoverCourses(course -> {});
+        
+        if (discovered == null || !discovered.isComplete())
+            return;
+        
+        discovered.save(cachePath);
+        
+        // If the student is viewing all their courses, then switch to the refreshed courses
+        if (this.allCoursesSelected)
+            this.courses = discovered.courses;
+    }
+    
+    // @return How long saved courses are used before they are discovered again, from elearn.courseCache.ttlHours
+    private static long getCourseTtlMillis() {
+        return Settings.getLong("elearn.courseCache.ttlHours", 24 * 7) * 60 * 60 * 1000;
+    }
+    
+    /*
+        @onCourse Called with each course as soon as it is resolved. Courses may arrive in any order and on any thread.
+        @return The student's courses in enrollment order, or null if they could not be discovered.
+    */
+    private CourseCache discoverCourses(Consumer<Course> onCourse) {
+        var coursesUrl = getEnrollmentsUrl();
 
         // Make a GET request to the API endpoint responsible for listing the student's enrolled courses
         var curCourses = Networking.getJSON(coursesUrl, "Authorization", "Bearer " + auth.token);
 
         if (curCourses == null)
-            return false;
+            return null;
         
-        var curCoursesList = curCourses.getJSONArray("entities");
+        var pending = new ArrayList<CompletableFuture<Course>>();
+        var pages = new HashSet<String>(); // The urls of the pages already read, so a "next" link back to one of them isn't followed forever
+        pages.add(coursesUrl);
+        
+        // The enrollments endpoint is paged, so keep following the "next" link until there are no pages left
+        while (curCourses != null) {
+            // Start requesting the next page right away so it downloads while this page's courses are being resolved
+            String nextUrl = getNextPageUrl(curCourses, pages);
+            var nextPage = nextUrl == null 
+                ? CompletableFuture.<JSONObject>completedFuture(null) 
+                : Networking.getJSONAsync(nextUrl, "Authorization", "Bearer " + auth.token);
+            
+            var curCoursesList = curCourses.optJSONArray("entities");
+            
+            // Start resolving every enrolled course on this page at once. Each course's lookups are chained, so no course waits on another
+            for (int i = 0; curCoursesList != null && i < curCoursesList.length(); i++) {
+                String courseInfoUrl = curCoursesList.getJSONObject(i).getString("href");
+                
+                pending.add(resolveCourse(courseInfoUrl).thenApply(course -> {
+                    if (course != null)
+                        onCourse.accept(course); // Hand the course to the caller without waiting for the other courses
+                    
+                    return course;
+                }));
+            }
+            
+            curCourses = nextPage.join();
+            
+            // Without the missing page the course list would be silently cut short
+            if (curCourses == null && nextUrl != null) {
+                System.out.println("Error! Failed to load a page of your enrollments");
+                return null;
+            }
+        }
 
-        if (curCoursesList.isEmpty()) {
+        if (pending.isEmpty()) {
             System.out.println("You are not registered for any courses!");
-            return false;
+            return null;
         }
         
-        // Iterate through the student's enrolled courses
-        for (int i = 0; i < curCoursesList.length(); i++) {
-            String courseInfoUrl = curCoursesList.getJSONObject(i).getString("href");
-
-            // Make a GET request for each course at another API endpoint responsible for giving more useful links for the course specified
-            JSONObject courseInfo = Networking.getJSON(courseInfoUrl, "Authorization", "Bearer " + auth.token);
+        var courses = new ArrayList<Course>();
+        
+        // Collect the courses in the same order they were listed by the enrollments endpoint
+        for (var course : pending) {
+            Course resolved = course.join();
             
+            if (resolved != null)
+                courses.add(resolved);
+        }
+        
+        return new CourseCache(System.currentTimeMillis(), pending.size(), courses);
+    }
+    
+    /*
+        @return The number of enrollments listed by the enrollments endpoint across all pages, or -1 if a page could not be read.
+    */
+    private int countEnrollments() {
+        var coursesUrl = getEnrollmentsUrl();
+        var pages = new HashSet<String>();
+        pages.add(coursesUrl);
+        int count = 0;
+        
+        while (coursesUrl != null) {
+            var page = Networking.getJSON(coursesUrl, "Authorization", "Bearer " + auth.token);
+            
+            if (page == null)
+                return -1;
+            
+            var entities = page.optJSONArray("entities");
+            count += entities == null ? 0 : entities.length();
+            coursesUrl = getNextPageUrl(page, pages);
+        }
+        
+        return count;
+    }
+    
+    // @return The url of the first page of the student's enrollments
+    private String getEnrollmentsUrl() {
+        return Urls.api("enrollments", String.format(
+            "/users/%s?search=&pageSize=20&embedDepth=0&sort=current&parentOrganizations=&orgUnitTypeId=3&promotePins=true&roles=&excludeEnded=true&excludeIndirect=false", 
+            auth.userId
+        ));
+    }
+    
+    /*
+        @page A page of results from the enrollments endpoint
+        @pages The urls of the pages already read. The next page's url is added to it
+        @return The url of the next page, or null if this is the last page, it links back to a page already read, or too many pages were read
+    */
+    private static String getNextPageUrl(JSONObject page, HashSet<String> pages) {
+        String next = findNextLink(page);
+        
+        if (next == null || !pages.add(next))
+            return null;
+        
+        if (pages.size() > MAX_ENROLLMENT_PAGES) {
+            System.out.printf("Warning! Only the first %d pages of your enrollments were read%n", MAX_ENROLLMENT_PAGES);
+            return null;
+        }
+        
+        return next;
+    }
+    
+    /*
+        @page A page of results from the enrollments endpoint
+        @return The href of the page's "next" link, or null if it has none
+    */
+    private static String findNextLink(JSONObject page) {
+        var links = page.optJSONArray("links");
+        
+        if (links == null)
+            return null;
+        
+        // Siren links have a list of relations. The next page is the link that has the "next" relation
+        for (int i = 0; i < links.length(); i++) {
+            var link = links.getJSONObject(i);
+            var rel = link.optJSONArray("rel");
+            
+            for (int j = 0; rel != null && j < rel.length(); j++) {
+                if (rel.getString(j).equals("next"))
+                    return link.optString("href", null);
+            }
+        }
+        
+        return null;
+    }
+    
+    /*
+        @courseInfoUrl The url from the enrollments endpoint for a single enrolled course
+        @return A future that completes with the course's ID and name, or with null if the course could not be resolved.
+    */
+    private CompletableFuture<Course> resolveCourse(String courseInfoUrl) {
+        // Make a GET request for the course at another API endpoint responsible for giving more useful links for the course specified
+        return Networking.getJSONAsync(courseInfoUrl, "Authorization", "Bearer " + auth.token).thenCompose(courseInfo -> {
             if (courseInfo == null)
-                continue;
+                return CompletableFuture.completedFuture(null);
             
-            var courseInfoLinks = courseInfo.getJSONArray("links");
-
-            String courseId = null;
-
-            // Iterate through the useful links until the numeric D2L course ID is found
-            for (int j = 0; j < courseInfoLinks.length(); j++) {
-                var linkObj = courseInfoLinks.getJSONObject(j);
-                String linkType = linkObj.getJSONArray("rel").getString(0);
-
-                // If the current link contains "/rels/organization" then the current link also contains the D2L numeric course ID
-                // We will extract the course ID and then break the useful links loop
-                if (linkType.contains("/rels/organization")){
-                    try {
-                        var courseHref = new URI(linkObj.getString("href"));
-                        courseId = courseHref.getPath().substring(1); // Extract courseId from the link
-                    } catch (URISyntaxException ex) {
-                        System.out.println("Error! Failed to get the ID of a course.");
-                        return false;
-                    }
+            String courseId = getCourseId(courseInfo);
+            
+            if (courseId == null)
+                return CompletableFuture.completedFuture(null);
+            
+            // As soon as we have the course ID, make a GET request to an API endpoint responsible for giving information about the course
+            return Networking.getJSONAsync(Urls.api("organizations", String.format("/%s?localeId=100021", courseId)), "Authorization", "Bearer " + auth.token)
+                .thenApply(courseData -> {
+                    // If request was successful and courseData has the field "properties" in the object, then extract the course name from the object
+                    if (courseData != null && courseData.has("properties"))
+                        return new Course(courseId, courseData.getJSONObject("properties").getString("name"));
                     
-                    break;
-                }
-            }
+                    return null;
+                });
+        }).exceptionally(ex -> null); // A malformed response for one course should not stop the other courses from loading
+    }
+    
+    /*
+        @courseInfo The JSON object returned by the course info endpoint
+        @return The numeric D2L course ID, or null if it could not be found.
+    */
+    private static String getCourseId(JSONObject courseInfo) {
+        var courseInfoLinks = courseInfo.getJSONArray("links");
 
-            // If we found the course ID for the current course, then lets get the name of the course and add it to our courses
-            if (courseId != null) {
-                // Make a GET request to an API endpoint responsible for giving information about the course
-                JSONObject courseData = Networking.getJSON(String.format("https://cfd2be83-bc1c-4a43-8ac3-469bc19bfc4a.organizations.api.brightspace.com/%s?localeId=100021", courseId) , "Authorization", "Bearer " + auth.token);
-                
-                // If request was successful and courseData has the field "properties" in the object, then extract the course name from the object and add the course to this.courses
-                if (courseData != null && courseData.has("properties")) {
-                    String courseName = courseData.getJSONObject("properties").getString("name");
-                    this.courses.add(new Course(courseId, courseName)); // Store the current course in this.courses
+        // Iterate through the useful links until the numeric D2L course ID is found
+        for (int j = 0; j < courseInfoLinks.length(); j++) {
+            var linkObj = courseInfoLinks.getJSONObject(j);
+            String linkType = linkObj.getJSONArray("rel").getString(0);
+
+            // If the current link contains "/rels/organization" then the current link also contains the D2L numeric course ID
+            if (linkType.contains("/rels/organization")){
+                try {
+                    String coursePath = new URI(linkObj.getString("href")).getPath();
+                    return coursePath.substring(coursePath.lastIndexOf('/') + 1); // Extract courseId from the end of the link, since the API url may have a path of its own
+                } catch (URISyntaxException ex) {
+                    System.out.println("Error! Failed to get the ID of a course.");
+                    return null;
                 }
             }
         }
         
-        return true;
+        return null;
     }
     
     /*
@@ -304,7 +750,7 @@ public class eLearn extends Menu {
         String form = String.format("username=%s&password=%s", username, password);
           
         // Make a POST request to the login API form with our username and password
-        var response = Networking.Post("https://elearn.volstate.edu/d2l/lp/auth/login/login.d2l", form, "Content-Type", "application/x-www-form-urlencoded");
+        var response = Networking.Post(Urls.elearn("/d2l/lp/auth/login/login.d2l"), form, "Content-Type", "application/x-www-form-urlencoded");
 
         if (response == null)
             return false;